@@ -0,0 +1,440 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.penguin.korean;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import scala.collection.Seq;
+
+import com.twitter.penguin.korean.tokenizer.KoreanTokenizer;
+import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken;
+import com.twitter.penguin.korean.tokenizer.TokenizerProfile;
+
+/**
+ * Non-blocking tokenization facade for event-loop based services.
+ * <p/>
+ * Texts are tokenized on the given executor and the results are returned as
+ * CompletableFutures, so calling threads never run the tokenizer. At most maxInFlight texts
+ * are accepted at a time; beyond that {@link #tokenize(CharSequence)} fails fast with a
+ * RejectedExecutionException instead of queueing without bound. Texts shorter than
+ * smallTextLength are queued and tokenized in micro-batches of up to maxBatchSize per
+ * executor task to amortize the dispatch cost. One batch runs while the queue is short, and
+ * another is scheduled for every maxBatchSize queued texts, up to maxBatchRunners at a time.
+ * <p/>
+ * {@link #newProcessor()} returns a {@link TokenizerFlow.Processor} that tokenizes a stream
+ * of texts in order with demand-driven backpressure.
+ */
+public final class AsyncKoreanTokenizer {
+  private final Executor executor;
+  private final int maxInFlight;
+  private final int smallTextLength;
+  private final int maxBatchSize;
+  private final int maxBatchRunners;
+  private final Semaphore permits;
+
+  private final ConcurrentLinkedQueue<Task> smallTexts = new ConcurrentLinkedQueue<>();
+  // ConcurrentLinkedQueue.size() is linear, so the queue length is counted separately.
+  private final AtomicInteger queuedSmallTexts = new AtomicInteger();
+  private final AtomicInteger scheduledBatches = new AtomicInteger();
+
+  private static final class Task {
+    final CharSequence text;
+    final TokenizerProfile profile;
+    final CompletableFuture<Seq<KoreanToken>> result = new CompletableFuture<>();
+
+    Task(CharSequence text, TokenizerProfile profile) {
+      this.text = text;
+      this.profile = profile;
+    }
+
+    void run() {
+      try {
+        result.complete(KoreanTokenizer.tokenize(text, profile));
+      } catch (Throwable t) {
+        result.completeExceptionally(t);
+      }
+    }
+  }
+
+  /**
+   * Virtual-thread-per-task executor when the running JDK provides one, the common
+   * fork-join pool otherwise.
+   */
+  public static Executor defaultExecutor() {
+    try {
+      return (Executor) java.util.concurrent.Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return ForkJoinPool.commonPool();
+    }
+  }
+
+  /**
+   * Threads of a fork-join pool or a thread pool executor, available processors otherwise.
+   */
+  static int parallelismOf(Executor executor) {
+    int processors = Runtime.getRuntime().availableProcessors();
+    if (executor instanceof ForkJoinPool) {
+      return ((ForkJoinPool) executor).getParallelism();
+    } else if (executor instanceof ThreadPoolExecutor) {
+      return Math.min(((ThreadPoolExecutor) executor).getMaximumPoolSize(), processors);
+    }
+    return processors;
+  }
+
+  public AsyncKoreanTokenizer() {
+    this(defaultExecutor(), 1024, 64, 32);
+  }
+
+  /**
+   * @param executor Executor running the tokenizer.
+   * @param maxInFlight Maximum number of texts accepted and not yet tokenized.
+   * @param smallTextLength Texts shorter than this are micro-batched.
+   * @param maxBatchSize Maximum number of small texts tokenized per executor task.
+   */
+  public AsyncKoreanTokenizer(Executor executor, int maxInFlight, int smallTextLength, int maxBatchSize) {
+    this(executor, maxInFlight, smallTextLength, maxBatchSize, parallelismOf(executor));
+  }
+
+  /**
+   * @param executor Executor running the tokenizer.
+   * @param maxInFlight Maximum number of texts accepted and not yet tokenized.
+   * @param smallTextLength Texts shorter than this are micro-batched.
+   * @param maxBatchSize Maximum number of small texts tokenized per executor task.
+   * @param maxBatchRunners Maximum number of micro-batches running at a time.
+   */
+  public AsyncKoreanTokenizer(Executor executor, int maxInFlight, int smallTextLength, int maxBatchSize,
+                              int maxBatchRunners) {
+    if (maxInFlight <= 0 || maxBatchSize <= 0 || maxBatchRunners <= 0) {
+      throw new IllegalArgumentException("maxInFlight, maxBatchSize and maxBatchRunners must be positive");
+    }
+    this.executor = executor;
+    this.maxInFlight = maxInFlight;
+    this.smallTextLength = smallTextLength;
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchRunners = maxBatchRunners;
+    this.permits = new Semaphore(maxInFlight);
+  }
+
+  public CompletableFuture<Seq<KoreanToken>> tokenize(CharSequence text) {
+    return tokenize(text, TokenizerProfile.defaultProfile());
+  }
+
+  /**
+   * Tokenize asynchronously.
+   *
+   * @param text Input text.
+   * @param profile Tokenizer profile.
+   * @return Future tokens, failed with RejectedExecutionException when too many texts are in flight.
+   */
+  public CompletableFuture<Seq<KoreanToken>> tokenize(CharSequence text, TokenizerProfile profile) {
+    if (!permits.tryAcquire()) {
+      CompletableFuture<Seq<KoreanToken>> rejected = new CompletableFuture<>();
+      rejected.completeExceptionally(new RejectedExecutionException(
+          "More than " + maxInFlight + " texts in flight"));
+      return rejected;
+    }
+    CompletableFuture<Seq<KoreanToken>> result;
+    try {
+      result = submit(text, profile);
+    } catch (RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+    result.whenComplete((tokens, error) -> permits.release());
+    return result;
+  }
+
+  /**
+   * Submit without taking an in-flight permit. Callers bound their own in-flight work.
+   * When the executor rejects the task, the future fails with its exception.
+   */
+  CompletableFuture<Seq<KoreanToken>> submit(CharSequence text, TokenizerProfile profile) {
+    final Task task = new Task(text, profile);
+    if (text.length() < smallTextLength) {
+      smallTexts.add(task);
+      queuedSmallTexts.incrementAndGet();
+      scheduleBatch();
+    } else {
+      try {
+        executor.execute(task::run);
+      } catch (RuntimeException e) {
+        task.result.completeExceptionally(e);
+      }
+    }
+    return task.result;
+  }
+
+  /**
+   * Schedules a batch when none is scheduled, and more while each scheduled batch has a full
+   * batch of queued texts waiting, up to maxBatchRunners.
+   */
+  private void scheduleBatch() {
+    while (true) {
+      int scheduled = scheduledBatches.get();
+      int queued = queuedSmallTexts.get();
+      if (queued == 0 || scheduled >= maxBatchRunners || (scheduled > 0 && queued < scheduled * maxBatchSize)) {
+        return;
+      }
+      if (!scheduledBatches.compareAndSet(scheduled, scheduled + 1)) {
+        continue;
+      }
+      try {
+        executor.execute(this::runBatch);
+      } catch (RuntimeException e) {
+        // When no other batch will run, fail the queued texts; the next submit schedules again.
+        if (scheduledBatches.decrementAndGet() == 0) {
+          Task task;
+          while ((task = smallTexts.poll()) != null) {
+            queuedSmallTexts.decrementAndGet();
+            task.result.completeExceptionally(e);
+          }
+        }
+        return;
+      }
+    }
+  }
+
+  private void runBatch() {
+    int done = 0;
+    Task task;
+    while (done < maxBatchSize && (task = smallTexts.poll()) != null) {
+      queuedSmallTexts.decrementAndGet();
+      task.run();
+      done++;
+    }
+    scheduledBatches.decrementAndGet();
+    // Texts queued after the last poll but before the count dropped need a new batch.
+    scheduleBatch();
+  }
+
+  public TokenizingProcessor newProcessor() {
+    return new TokenizingProcessor(TokenizerProfile.defaultProfile());
+  }
+
+  public TokenizingProcessor newProcessor(TokenizerProfile profile) {
+    return new TokenizingProcessor(profile);
+  }
+
+  /**
+   * Tokenizes texts from an upstream publisher and publishes the token sequences in the
+   * same order to a single subscriber. Texts are only requested from upstream while the
+   * subscriber has outstanding demand, and never more than maxInFlight at a time.
+   */
+  public final class TokenizingProcessor
+      implements TokenizerFlow.Processor<CharSequence, Seq<KoreanToken>> {
+    private final TokenizerProfile profile;
+    private final ArrayDeque<CompletableFuture<Seq<KoreanToken>>> pending = new ArrayDeque<>();
+
+    private TokenizerFlow.Subscription upstream;
+    private TokenizerFlow.Subscriber<? super Seq<KoreanToken>> downstream;
+    private long demand;
+    private long requestedUpstream;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+    private Throwable invalidRequest;
+    private boolean terminated;
+    private boolean draining;
+    private boolean missedDrain;
+
+    private TokenizingProcessor(TokenizerProfile profile) {
+      this.profile = profile;
+    }
+
+    @Override
+    public void subscribe(TokenizerFlow.Subscriber<? super Seq<KoreanToken>> subscriber) {
+      synchronized (this) {
+        if (downstream != null) {
+          throw new IllegalStateException("TokenizingProcessor supports a single subscriber");
+        }
+        downstream = subscriber;
+      }
+      subscriber.onSubscribe(new TokenizerFlow.Subscription() {
+        @Override
+        public void request(long n) {
+          TokenizerFlow.Subscription toCancel = null;
+          synchronized (TokenizingProcessor.this) {
+            if (n <= 0) {
+              // Rule 3.9: cancel upstream right away and signal the error without
+              // delivering the results still pending.
+              if (invalidRequest == null && !terminated) {
+                invalidRequest = new IllegalArgumentException("Non-positive request: " + n);
+                pending.clear();
+                toCancel = upstream;
+              }
+            } else {
+              demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+          }
+          if (toCancel != null) {
+            toCancel.cancel();
+          }
+          drain();
+        }
+
+        @Override
+        public void cancel() {
+          TokenizerFlow.Subscription toCancel;
+          synchronized (TokenizingProcessor.this) {
+            terminated = true;
+            pending.clear();
+            toCancel = upstream;
+          }
+          if (toCancel != null) {
+            toCancel.cancel();
+          }
+        }
+      });
+      drain();
+    }
+
+    @Override
+    public void onSubscribe(TokenizerFlow.Subscription subscription) {
+      boolean cancelled;
+      synchronized (this) {
+        if (upstream != null) {
+          subscription.cancel();
+          return;
+        }
+        upstream = subscription;
+        cancelled = terminated || invalidRequest != null;
+      }
+      if (cancelled) {
+        subscription.cancel();
+        return;
+      }
+      drain();
+    }
+
+    @Override
+    public void onNext(CharSequence text) {
+      CompletableFuture<Seq<KoreanToken>> result = submit(text, profile);
+      synchronized (this) {
+        if (requestedUpstream > 0) {
+          requestedUpstream--;
+        }
+        if (!terminated) {
+          pending.add(result);
+        }
+      }
+      result.whenComplete((tokens, error) -> drain());
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      synchronized (this) {
+        upstreamError = throwable;
+        upstreamDone = true;
+      }
+      drain();
+    }
+
+    @Override
+    public void onComplete() {
+      synchronized (this) {
+        upstreamDone = true;
+      }
+      drain();
+    }
+
+    /**
+     * Emits completed results in order and tops up the upstream request. Signals to the
+     * subscriber are serialized by the draining flag.
+     */
+    private void drain() {
+      synchronized (this) {
+        if (draining) {
+          missedDrain = true;
+          return;
+        }
+        draining = true;
+      }
+      while (true) {
+        Seq<KoreanToken> next = null;
+        Throwable error = null;
+        boolean complete = false;
+        long toRequest = 0;
+        TokenizerFlow.Subscription up;
+        TokenizerFlow.Subscriber<? super Seq<KoreanToken>> down;
+        synchronized (this) {
+          up = upstream;
+          down = downstream;
+          CompletableFuture<Seq<KoreanToken>> head = pending.peek();
+          if (terminated || down == null) {
+            // Nothing to deliver.
+          } else if (invalidRequest != null) {
+            terminated = true;
+            error = invalidRequest;
+            up = null; // Already cancelled by request
+          } else if (head != null && head.isDone() && demand > 0) {
+            pending.poll();
+            try {
+              next = head.join();
+              demand--;
+            } catch (RuntimeException e) {
+              error = e.getCause() != null ? e.getCause() : e;
+              terminated = true;
+            }
+          } else if (upstreamDone && pending.isEmpty()) {
+            terminated = true;
+            error = upstreamError;
+            complete = error == null;
+          } else if (up != null && !upstreamDone) {
+            long outstanding = requestedUpstream + pending.size();
+            long wanted = Math.min(maxInFlight, demand) - outstanding;
+            if (wanted > 0) {
+              requestedUpstream += wanted;
+              toRequest = wanted;
+            }
+          }
+
+          if (next == null && error == null && !complete && toRequest == 0) {
+            if (missedDrain) {
+              missedDrain = false;
+              continue;
+            }
+            draining = false;
+            return;
+          }
+        }
+
+        if (toRequest > 0) {
+          up.request(toRequest);
+        }
+        if (next != null) {
+          down.onNext(next);
+        } else if (error != null) {
+          if (up != null) {
+            up.cancel();
+          }
+          down.onError(error);
+        } else if (complete) {
+          down.onComplete();
+        }
+      }
+    }
+  }
+}
@@ -37,4 +37,17 @@ public enum KoreanPosJava {
   Space, Others,
 
   ProperNoun;
+
+  private static final KoreanPosJava[] BY_ID = values();
+
+  /**
+   * Maps a Scala KoreanPos id (KoreanPos.X.id) to its Java counterpart. Both enumerations
+   * declare the POSes in the same order, so ids and ordinals are interchangeable.
+   *
+   * @param id KoreanPos id
+   * @return KoreanPosJava with the same ordinal
+   */
+  public static KoreanPosJava fromId(int id) {
+    return BY_ID[id];
+  }
 }
@@ -0,0 +1,117 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.penguin.korean;
+
+import java.util.Arrays;
+
+/**
+ * Reusable column-oriented token buffer. Tokens are stored in parallel primitive arrays that
+ * grow as needed and are kept across {@link #clear()} calls, so a caller tokenizing many texts
+ * on one thread does not build a KoreanTokenJava list per text. The tokenizer still creates
+ * its own tokens, which are copied into the buffer. Not thread-safe.
+ */
+public final class KoreanTokenBuffer {
+  private static final int INIT_SIZE = 64;
+
+  private String[] texts = new String[INIT_SIZE];
+  private int[] posIds = new int[INIT_SIZE];
+  private int[] offsets = new int[INIT_SIZE];
+  private int[] lengths = new int[INIT_SIZE];
+  private boolean[] unknowns = new boolean[INIT_SIZE];
+  private int size;
+
+  public void clear() {
+    Arrays.fill(texts, 0, size, null);
+    size = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void add(String text, int posId, int offset, int length, boolean unknown) {
+    if (size == texts.length) {
+      int newSize = size << 1;
+      texts = Arrays.copyOf(texts, newSize);
+      posIds = Arrays.copyOf(posIds, newSize);
+      offsets = Arrays.copyOf(offsets, newSize);
+      lengths = Arrays.copyOf(lengths, newSize);
+      unknowns = Arrays.copyOf(unknowns, newSize);
+    }
+    texts[size] = text;
+    posIds[size] = posId;
+    offsets[size] = offset;
+    lengths[size] = length;
+    unknowns[size] = unknown;
+    size++;
+  }
+
+  public String getText(int i) {
+    checkIndex(i);
+    return texts[i];
+  }
+
+  /**
+   * @return the POS id shared with com.twitter.penguin.korean.util.KoreanPos and {@link KoreanPosJava}
+   */
+  public int getPosId(int i) {
+    checkIndex(i);
+    return posIds[i];
+  }
+
+  public KoreanPosJava getPos(int i) {
+    return KoreanPosJava.fromId(getPosId(i));
+  }
+
+  public int getOffset(int i) {
+    checkIndex(i);
+    return offsets[i];
+  }
+
+  public int getLength(int i) {
+    checkIndex(i);
+    return lengths[i];
+  }
+
+  public boolean isUnknown(int i) {
+    checkIndex(i);
+    return unknowns[i];
+  }
+
+  public KoreanTokenJava getToken(int i) {
+    return new KoreanTokenJava(getText(i), getPos(i), getOffset(i), getLength(i), isUnknown(i));
+  }
+
+  private void checkIndex(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(getToken(i));
+    }
+    return sb.append(']').toString();
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.penguin.korean;
+
+/**
+ * Reactive stream interfaces with the same shape and rules as java.util.concurrent.Flow,
+ * which is not available on Java 8. Adapters to Flow or Reactive Streams are one-liners.
+ */
+public final class TokenizerFlow {
+  private TokenizerFlow() {
+  }
+
+  public interface Publisher<T> {
+    void subscribe(Subscriber<? super T> subscriber);
+  }
+
+  public interface Subscriber<T> {
+    void onSubscribe(Subscription subscription);
+
+    void onNext(T item);
+
+    void onError(Throwable throwable);
+
+    void onComplete();
+  }
+
+  public interface Subscription {
+    void request(long n);
+
+    void cancel();
+  }
+
+  public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+  }
+}
@@ -18,7 +18,8 @@
 
 package com.twitter.penguin.korean;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import scala.collection.Iterator;
@@ -34,6 +35,7 @@ import com.twitter.penguin.korean.util.KoreanPos;
  * Java wrapper for TwitterKoreanProcessor using Builder pattern
  */
 public final class TwitterKoreanProcessorJava {
+  private static final int SPACE_ID = KoreanPos.Space().id();
 
   /**
    * Normalize Korean text
@@ -69,20 +71,57 @@ public final class TwitterKoreanProcessorJava {
 
 
   /**
-   * Transforms the tokenization output to List<KoreanTokenJava>
+   * Tokenize into a caller-owned buffer. The buffer is cleared first and can be reused
+   * across calls instead of converting each result to KoreanTokenJavas.
+   *
+   * @param text Input text.
+   * @param buffer Output buffer.
+   * @param keepSpace true to keep Space tokens.
+   * @return The buffer.
+   */
+  public static KoreanTokenBuffer tokenize(CharSequence text, KoreanTokenBuffer buffer, boolean keepSpace) {
+    return tokensToBuffer(tokenize(text), buffer, keepSpace);
+  }
+
+  /**
+   * Copies Korean tokens into a caller-owned buffer. The buffer is cleared first.
    *
    * @param tokens Korean tokens (output of tokenize(CharSequence text)).
-   * @return List of KoreanTokenJava.
+   * @param buffer Output buffer.
+   * @param keepSpace true to keep Space tokens.
+   * @return The buffer.
    */
-  public static List<KoreanTokenJava> tokensToJavaKoreanTokenList(Seq<KoreanToken> tokens, boolean keepSpace) {
+  public static KoreanTokenBuffer tokensToBuffer(Seq<KoreanToken> tokens, KoreanTokenBuffer buffer, boolean keepSpace) {
+    buffer.clear();
     Iterator<KoreanToken> tokenized = tokens.iterator();
-    List<KoreanTokenJava> output = new LinkedList<>();
     while (tokenized.hasNext()) {
       KoreanToken token = tokenized.next();
-      if (keepSpace || token.pos() != KoreanPos.Space()) {
+      int posId = token.pos().id();
+      if (keepSpace || posId != SPACE_ID) {
+        buffer.add(token.text(), posId, token.offset(), token.length(), token.unknown());
+      }
+    }
+    return buffer;
+  }
+
+  /**
+   * Transforms the tokenization output to KoreanTokenJavas, appending to a caller-owned collection.
+   *
+   * @param tokens Korean tokens (output of tokenize(CharSequence text)).
+   * @param keepSpace true to keep Space tokens.
+   * @param output Collection to append to.
+   * @return The output collection.
+   */
+  public static <C extends Collection<? super KoreanTokenJava>> C tokensToJavaKoreanTokenList(
+      Seq<KoreanToken> tokens, boolean keepSpace, C output) {
+    Iterator<KoreanToken> tokenized = tokens.iterator();
+    while (tokenized.hasNext()) {
+      KoreanToken token = tokenized.next();
+      int posId = token.pos().id();
+      if (keepSpace || posId != SPACE_ID) {
         output.add(new KoreanTokenJava(
             token.text(),
-            KoreanPosJava.valueOf(token.pos().toString()),
+            KoreanPosJava.fromId(posId),
             token.offset(),
             token.length(),
             token.unknown()
@@ -92,31 +131,52 @@ public final class TwitterKoreanProcessorJava {
     return output;
   }
 
+  /**
+   * Transforms the tokenization output to List<KoreanTokenJava>
+   *
+   * @param tokens Korean tokens (output of tokenize(CharSequence text)).
+   * @return List of KoreanTokenJava.
+   */
+  public static List<KoreanTokenJava> tokensToJavaKoreanTokenList(Seq<KoreanToken> tokens, boolean keepSpace) {
+    return tokensToJavaKoreanTokenList(tokens, keepSpace, new ArrayList<KoreanTokenJava>(tokens.size()));
+  }
+
   // Default behavior of keepSpace is false
   public static List<KoreanTokenJava> tokensToJavaKoreanTokenList(Seq<KoreanToken> tokens) {
     return tokensToJavaKoreanTokenList(tokens, false);
   }
 
-
   /**
-   * Tokenize with the builder options into a String Iterable.
+   * Tokenize with the builder options into token strings, appending to a caller-owned collection.
    *
    * @param tokens Korean tokens (output of tokenize(CharSequence text)).
-   * @return List of token strings.
+   * @param keepSpace true to keep Space tokens.
+   * @param output Collection to append to.
+   * @return The output collection.
    */
-  public static List<String> tokensToJavaStringList(Seq<KoreanToken> tokens, boolean keepSpace) {
+  public static <C extends Collection<? super String>> C tokensToJavaStringList(
+      Seq<KoreanToken> tokens, boolean keepSpace, C output) {
     Iterator<KoreanToken> tokenized = tokens.iterator();
-    List<String> output = new LinkedList<>();
     while (tokenized.hasNext()) {
       final KoreanToken token = tokenized.next();
 
-      if (keepSpace || token.pos() != KoreanPos.Space()) {
+      if (keepSpace || token.pos().id() != SPACE_ID) {
         output.add(token.text());
       }
     }
     return output;
   }
 
+  /**
+   * Tokenize with the builder options into a String Iterable.
+   *
+   * @param tokens Korean tokens (output of tokenize(CharSequence text)).
+   * @return List of token strings.
+   */
+  public static List<String> tokensToJavaStringList(Seq<KoreanToken> tokens, boolean keepSpace) {
+    return tokensToJavaStringList(tokens, keepSpace, new ArrayList<String>(tokens.size()));
+  }
+
   // Default behavior of keepSpace is false
   public static List<String> tokensToJavaStringList(Seq<KoreanToken> tokens) {
     return tokensToJavaStringList(tokens, false);
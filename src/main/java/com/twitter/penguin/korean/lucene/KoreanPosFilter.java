@@ -0,0 +1,51 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.penguin.korean.lucene;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.FilteringTokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+import com.twitter.penguin.korean.KoreanPosJava;
+
+/**
+ * Removes tokens whose type is one of the given parts of speech.
+ */
+public final class KoreanPosFilter extends FilteringTokenFilter {
+  private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+  private final Set<String> removedTypes = new HashSet<>();
+
+  /**
+   * @param input token stream typed with KoreanPos names, e.g. from {@link TwitterKoreanTokenizer}
+   * @param removedPos parts of speech to remove
+   */
+  public KoreanPosFilter(TokenStream input, Set<KoreanPosJava> removedPos) {
+    super(input);
+    for (KoreanPosJava pos : removedPos) {
+      removedTypes.add(pos.name());
+    }
+  }
+
+  @Override
+  protected boolean accept() {
+    return !removedTypes.contains(typeAtt.type());
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.penguin.korean.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import scala.collection.Iterator;
+import scala.collection.JavaConversions;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+import com.twitter.penguin.korean.stemmer.KoreanStemmer;
+import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken;
+import com.twitter.penguin.korean.util.KoreanPos;
+
+/**
+ * Stems predicates (see KoreanStemmer) in a stream from {@link TwitterKoreanTokenizer}:
+ * predicates become their dictionary form and absorb the endings that follow them.
+ * <p/>
+ * Endings attach to the preceding predicate, so the filter reads the whole upstream stream on
+ * the first call to {@link #incrementToken()}. Tokens separated by a gap in their offsets are
+ * not merged. Token types must be KoreanPos names.
+ * <p/>
+ * A merged ending takes no position of its own, but upstream position gaps before it are
+ * kept, and the positions of endings the stemmer drops go to the next token. With an upstream
+ * of consecutive positions, the output positions are those of {@link TwitterKoreanTokenizer}
+ * with stemming, which stems each chunk as it is parsed without buffering the stream and is the
+ * cheaper choice when it is the source of the stream.
+ */
+public final class KoreanStemFilter extends TokenFilter {
+  private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+  private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+  private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+  private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+
+  private final List<KoreanToken> buffered = new ArrayList<>();
+  // Start offset and position increment of each upstream token
+  private int[] starts = new int[64];
+  private int[] increments = new int[64];
+  private int upstreamCount;
+  private int nextUpstream;
+  private Iterator<KoreanToken> stemmed;
+
+  public KoreanStemFilter(TokenStream input) {
+    super(input);
+  }
+
+  @Override
+  public boolean incrementToken() throws IOException {
+    if (stemmed == null) {
+      int lastEnd = -1;
+      while (input.incrementToken()) {
+        int start = offsetAtt.startOffset();
+        int end = offsetAtt.endOffset();
+        if (lastEnd >= 0 && start > lastEnd) {
+          // Mark the gap so the stemmer does not merge across it.
+          buffered.add(new KoreanToken(" ", KoreanPos.Space(), lastEnd, start - lastEnd, false));
+        }
+        buffered.add(new KoreanToken(termAtt.toString(), KoreanPos.withName(typeAtt.type()),
+            start, end - start, false));
+        if (upstreamCount == starts.length) {
+          starts = Arrays.copyOf(starts, upstreamCount * 2);
+          increments = Arrays.copyOf(increments, upstreamCount * 2);
+        }
+        starts[upstreamCount] = start;
+        increments[upstreamCount] = posIncAtt.getPositionIncrement();
+        upstreamCount++;
+        lastEnd = end;
+      }
+      stemmed = KoreanStemmer.stem(JavaConversions.asScalaBuffer(buffered)).iterator();
+    }
+
+    while (stemmed.hasNext()) {
+      KoreanToken token = stemmed.next();
+      if (token.pos() == KoreanPos.Space()) {
+        continue;
+      }
+      int start = token.offset();
+      int end = start + token.length();
+      int increment = 0;
+      // Upstream tokens the stemmer dropped
+      while (nextUpstream < upstreamCount && starts[nextUpstream] < start) {
+        increment += increments[nextUpstream++];
+      }
+      if (nextUpstream < upstreamCount && starts[nextUpstream] == start) {
+        increment += increments[nextUpstream++];
+      } else {
+        // The second part of a predicate split after a noun heading
+        increment += 1;
+      }
+      // Endings merged into this token
+      while (nextUpstream < upstreamCount && starts[nextUpstream] < end) {
+        increment += increments[nextUpstream++] - 1;
+      }
+
+      clearAttributes();
+      termAtt.append(token.text());
+      offsetAtt.setOffset(start, end);
+      typeAtt.setType(token.pos().toString());
+      posIncAtt.setPositionIncrement(increment);
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void end() throws IOException {
+    super.end();
+    int increment = posIncAtt.getPositionIncrement();
+    while (nextUpstream < upstreamCount) {
+      increment += increments[nextUpstream++];
+    }
+    posIncAtt.setPositionIncrement(increment);
+  }
+
+  @Override
+  public void reset() throws IOException {
+    super.reset();
+    buffered.clear();
+    upstreamCount = 0;
+    nextUpstream = 0;
+    stemmed = null;
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.penguin.korean.lucene;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+
+import com.twitter.penguin.korean.KoreanPosJava;
+import com.twitter.penguin.korean.tokenizer.TokenizerProfile;
+
+/**
+ * Analyzer chaining {@link TwitterKoreanTokenizer}, stemming while parsing, and
+ * {@link KoreanPosFilter}. Lucene reuses the chain per thread and field.
+ */
+public final class TwitterKoreanAnalyzer extends Analyzer {
+  public static final Set<KoreanPosJava> DEFAULT_REMOVED_POS = EnumSet.of(
+      KoreanPosJava.Punctuation, KoreanPosJava.Josa, KoreanPosJava.Eomi, KoreanPosJava.PreEomi);
+
+  private final boolean normalize;
+  private final boolean stem;
+  private final Set<KoreanPosJava> removedPos;
+
+  public TwitterKoreanAnalyzer() {
+    this(true, true, DEFAULT_REMOVED_POS);
+  }
+
+  /**
+   * @param normalize true to normalize before parsing
+   * @param stem true to stem predicates
+   * @param removedPos parts of speech left out of the index
+   */
+  public TwitterKoreanAnalyzer(boolean normalize, boolean stem, Set<KoreanPosJava> removedPos) {
+    this.normalize = normalize;
+    this.stem = stem;
+    this.removedPos = EnumSet.noneOf(KoreanPosJava.class);
+    this.removedPos.addAll(removedPos);
+  }
+
+  @Override
+  protected TokenStreamComponents createComponents(String fieldName) {
+    TwitterKoreanTokenizer source =
+        new TwitterKoreanTokenizer(normalize, stem, TokenizerProfile.defaultProfile());
+    TokenStream result = source;
+    if (!removedPos.isEmpty()) {
+      result = new KoreanPosFilter(result, removedPos);
+    }
+    return new TokenStreamComponents(source, result);
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.penguin.korean.lucene;
+
+import java.io.IOException;
+
+import scala.Enumeration;
+import scala.collection.Iterator;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+import com.twitter.penguin.korean.normalizer.KoreanNormalizer;
+import com.twitter.penguin.korean.normalizer.NormalizedText;
+import com.twitter.penguin.korean.normalizer.OffsetMap;
+import com.twitter.penguin.korean.tokenizer.KoreanTokenizer;
+import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken;
+import com.twitter.penguin.korean.tokenizer.TokenizerProfile;
+import com.twitter.penguin.korean.util.KoreanPos;
+
+/**
+ * Lucene Tokenizer that chunks, optionally normalizes, and parses Korean text, optionally
+ * stemming predicates while parsing (see KoreanStemmer).
+ * <p/>
+ * Each token's term is its text, its type is the KoreanPos name, and its offsets point into
+ * the original input even when the text was normalized. Spaces are not emitted. The read
+ * buffers are kept across {@link #reset()} calls, so an Analyzer reusing one instance per
+ * thread does not reallocate them per document.
+ * <p/>
+ * Requires lucene-core, an optional dependency of this library.
+ */
+public final class TwitterKoreanTokenizer extends Tokenizer {
+  private static final Enumeration.Value SPACE = KoreanPos.Space();
+
+  private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+  private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+  private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+
+  private final boolean normalize;
+  private final boolean stem;
+  private final TokenizerProfile profile;
+
+  private final StringBuilder text = new StringBuilder();
+  private final char[] readBuffer = new char[4096];
+  private OffsetMap offsets;
+  private Iterator<KoreanToken> tokens;
+  private int finalOffset;
+
+  public TwitterKoreanTokenizer() {
+    this(true, TokenizerProfile.defaultProfile());
+  }
+
+  /**
+   * @param normalize true to normalize the text before parsing (see KoreanNormalizer)
+   * @param profile tokenizer profile
+   */
+  public TwitterKoreanTokenizer(boolean normalize, TokenizerProfile profile) {
+    this(normalize, false, profile);
+  }
+
+  /**
+   * @param normalize true to normalize the text before parsing (see KoreanNormalizer)
+   * @param stem true to emit stemmed tokens, same as {@link KoreanStemFilter} on this tokenizer
+   * @param profile tokenizer profile
+   */
+  public TwitterKoreanTokenizer(boolean normalize, boolean stem, TokenizerProfile profile) {
+    this.normalize = normalize;
+    this.stem = stem;
+    this.profile = profile;
+  }
+
+  @Override
+  public void reset() throws IOException {
+    super.reset();
+    text.setLength(0);
+    int read;
+    while ((read = input.read(readBuffer)) != -1) {
+      text.append(readBuffer, 0, read);
+    }
+
+    CharSequence parsed = text;
+    offsets = null;
+    if (normalize) {
+      NormalizedText normalized = KoreanNormalizer.normalizeWithOffsets(text);
+      parsed = normalized.text();
+      offsets = normalized.offsets();
+    }
+    tokens = KoreanTokenizer.tokenize(parsed, profile, stem).iterator();
+    finalOffset = correctOffset(text.length());
+  }
+
+  private int toOriginal(int offset) {
+    return correctOffset(offsets == null ? offset : offsets.toOriginal(offset));
+  }
+
+  @Override
+  public boolean incrementToken() throws IOException {
+    clearAttributes();
+    while (tokens.hasNext()) {
+      KoreanToken token = tokens.next();
+      if (token.pos() == SPACE) {
+        continue;
+      }
+      termAtt.append(token.text());
+      offsetAtt.setOffset(toOriginal(token.offset()), toOriginal(token.offset() + token.length()));
+      typeAtt.setType(token.pos().toString());
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void end() throws IOException {
+    super.end();
+    offsetAtt.setOffset(finalOffset, finalOffset);
+  }
+
+  @Override
+  public void close() throws IOException {
+    super.close();
+    tokens = null;
+    offsets = null;
+  }
+}
@@ -336,6 +336,31 @@ public class CharArrayMap<V> extends AbstractMap<Object, V> {
     return count;
   }
 
+  /**
+   * Number of slots in the hash table.
+   */
+  public int capacity() {
+    return keys.length;
+  }
+
+  /**
+   * Estimated heap bytes of the hash table and the key chars, assuming compressed references.
+   * Values are not counted.
+   */
+  public long estimatedBytes() {
+    long bytes = 2 * arrayBytes(4, keys.length);
+    for (char[] key : keys) {
+      if (key != null) {
+        bytes += arrayBytes(2, key.length);
+      }
+    }
+    return bytes;
+  }
+
+  static long arrayBytes(int elementBytes, int length) {
+    return (16 + (long) elementBytes * length + 7) & ~7L;
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder("{");
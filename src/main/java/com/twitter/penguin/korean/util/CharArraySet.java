@@ -91,6 +91,20 @@ public class CharArraySet extends AbstractSet<Object> {
     map.clear();
   }
 
+  /**
+   * Number of slots in the hash table.
+   */
+  public int capacity() {
+    return map.capacity();
+  }
+
+  /**
+   * Estimated heap bytes of the set, assuming compressed references.
+   */
+  public long estimatedBytes() {
+    return map.estimatedBytes();
+  }
+
   /**
    * true if the <code>len</code> chars of <code>text</code> starting at <code>off</code>
    * are in the set
@@ -0,0 +1,352 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A read-only {@link CharArraySet} stored in a memory-mapped file.
+ * <p/>
+ * Words are kept off-heap in an open-addressing hash table, so a large dictionary costs
+ * no heap objects and the OS page cache shares the file between JVMs on the same host.
+ * Lookups of a char[] slice compare against the mapped chars without copying.
+ * <p/>
+ * Words added with {@code add} go to a small on-heap overlay, so runtime additions such as
+ * addNounsToDictionary keep working. {@link #clear()} is not supported.
+ * <p/>
+ * File layout (big-endian): magic, version, word count, table capacity, a 64-bit hash of the
+ * sources the words were built from, then capacity slots of (hash, data offset or -1), then
+ * for each word its length and UTF-16 chars.
+ */
+public class MappedCharArraySet extends CharArraySet {
+  private static final int MAGIC = 0x4B444943;
+  private static final int VERSION = 2;
+  private static final int HEADER_BYTES = 24;
+  private static final int SLOT_BYTES = 8;
+
+  private final ByteBuffer buffer;
+  private final int count;
+  private final long sourceHash;
+  private final int mask;
+  private final int dataStart;
+  private final CharArraySet overlay = new CharArraySet(16, false);
+
+  private MappedCharArraySet(ByteBuffer buffer) {
+    super(CharArrayMap.emptyMap());
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Not a mapped dictionary");
+    }
+    this.buffer = buffer;
+    this.count = buffer.getInt(8);
+    int capacity = buffer.getInt(12);
+    this.sourceHash = buffer.getLong(16);
+    this.mask = capacity - 1;
+    this.dataStart = HEADER_BYTES + capacity * SLOT_BYTES;
+  }
+
+  /**
+   * Map a dictionary file written by {@link #write(File, Iterable, long)}.
+   *
+   * @throws IllegalArgumentException when the file is not a dictionary of this version
+   */
+  public static MappedCharArraySet open(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+         FileChannel channel = raf.getChannel()) {
+      return new MappedCharArraySet(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Write words to a dictionary file with a source hash of 0.
+   */
+  public static void write(File file, Iterable<?> words) throws IOException {
+    write(file, words, 0L);
+  }
+
+  /**
+   * Write words to a dictionary file. The file is written next to the target and moved into
+   * place, so processes opening it concurrently never see a partial file.
+   *
+   * @param file  target file
+   * @param words words as CharSequences or char[]s; duplicates are written once
+   * @param sourceHash hash of the sources of the words, see {@link #sourceHash()}
+   */
+  public static void write(File file, Iterable<?> words, long sourceHash) throws IOException {
+    CharArraySet unique = new CharArraySet(10000, false);
+    List<char[]> entries = new ArrayList<>();
+    for (Object word : words) {
+      char[] chars = word instanceof char[] ? (char[]) word : word.toString().toCharArray();
+      if (unique.add(chars)) {
+        entries.add(chars);
+      }
+    }
+
+    int capacity = Integer.highestOneBit(Math.max(entries.size(), 1) * 2 - 1) << 1;
+    int[] hashes = new int[capacity];
+    int[] offsets = new int[capacity];
+    Arrays.fill(offsets, -1);
+    int dataOffset = 0;
+    for (char[] chars : entries) {
+      int hash = hash(chars, 0, chars.length);
+      int slot = hash & (capacity - 1);
+      while (offsets[slot] >= 0) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      hashes[slot] = hash;
+      offsets[slot] = dataOffset;
+      dataOffset += 4 + chars.length * 2;
+    }
+
+    File tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        out.writeInt(capacity);
+        out.writeLong(sourceHash);
+        for (int i = 0; i < capacity; i++) {
+          out.writeInt(hashes[i]);
+          out.writeInt(offsets[i]);
+        }
+        for (char[] chars : entries) {
+          out.writeInt(chars.length);
+          for (char c : chars) {
+            out.writeChar(c);
+          }
+        }
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      tmp.delete();
+    }
+  }
+
+  private static int hash(char[] text, int off, int len) {
+    int h = 0;
+    for (int i = off; i < off + len; i++) {
+      h = 31 * h + text[i];
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static int hash(CharSequence text) {
+    int h = 0;
+    for (int i = 0; i < text.length(); i++) {
+      h = 31 * h + text.charAt(i);
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private boolean mappedContains(char[] text, int off, int len) {
+    int hash = hash(text, off, len);
+    int slot = hash & mask;
+    while (true) {
+      int position = HEADER_BYTES + slot * SLOT_BYTES;
+      int offset = buffer.getInt(position + 4);
+      if (offset < 0) {
+        return false;
+      }
+      if (buffer.getInt(position) == hash) {
+        int data = dataStart + offset;
+        if (buffer.getInt(data) == len) {
+          int i = 0;
+          while (i < len && buffer.getChar(data + 4 + i * 2) == text[off + i]) {
+            i++;
+          }
+          if (i == len) {
+            return true;
+          }
+        }
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private boolean mappedContains(CharSequence text) {
+    int len = text.length();
+    int hash = hash(text);
+    int slot = hash & mask;
+    while (true) {
+      int position = HEADER_BYTES + slot * SLOT_BYTES;
+      int offset = buffer.getInt(position + 4);
+      if (offset < 0) {
+        return false;
+      }
+      if (buffer.getInt(position) == hash) {
+        int data = dataStart + offset;
+        if (buffer.getInt(data) == len) {
+          int i = 0;
+          while (i < len && buffer.getChar(data + 4 + i * 2) == text.charAt(i)) {
+            i++;
+          }
+          if (i == len) {
+            return true;
+          }
+        }
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean contains(char[] text, int off, int len) {
+    return mappedContains(text, off, len) || overlay.contains(text, off, len);
+  }
+
+  @Override
+  public boolean contains(CharSequence cs) {
+    return mappedContains(cs) || overlay.contains(cs);
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (o instanceof char[]) {
+      final char[] text = (char[]) o;
+      return contains(text, 0, text.length);
+    }
+    return contains(o.toString());
+  }
+
+  @Override
+  public boolean add(Object o) {
+    return !contains(o) && overlay.add(o);
+  }
+
+  @Override
+  public boolean add(CharSequence text) {
+    return !contains(text) && overlay.add(text);
+  }
+
+  @Override
+  public boolean add(String text) {
+    return !contains(text) && overlay.add(text);
+  }
+
+  @Override
+  public boolean add(char[] text) {
+    return !contains(text, 0, text.length) && overlay.add(text);
+  }
+
+  @Override
+  public int size() {
+    return count + overlay.size();
+  }
+
+  /**
+   * Number of slots in the mapped hash table.
+   */
+  @Override
+  public int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Heap bytes of the runtime additions only; the mapped words are off-heap.
+   */
+  @Override
+  public long estimatedBytes() {
+    return overlay.estimatedBytes();
+  }
+
+  /**
+   * Hash of the sources the file was written from, to tell whether it is stale.
+   */
+  public long sourceHash() {
+    return sourceHash;
+  }
+
+  /**
+   * A set over the same mapping with an empty overlay, i.e. only the words of the file.
+   */
+  public MappedCharArraySet withoutAdditions() {
+    return new MappedCharArraySet(buffer);
+  }
+
+  /**
+   * Size of the mapped file in bytes.
+   */
+  public long mappedBytes() {
+    return buffer.capacity();
+  }
+
+  /**
+   * Returns an {@link Iterator} over copies of the mapped words as {@code char[]}, followed
+   * by the words added at runtime.
+   */
+  @Override
+  public Iterator<Object> iterator() {
+    final Iterator<Object> added = overlay.iterator();
+    return new Iterator<Object>() {
+      private int slot = nextSlot(0);
+
+      private int nextSlot(int from) {
+        int capacity = mask + 1;
+        while (from < capacity && buffer.getInt(HEADER_BYTES + from * SLOT_BYTES + 4) < 0) {
+          from++;
+        }
+        return from;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return slot <= mask || added.hasNext();
+      }
+
+      @Override
+      public Object next() {
+        if (slot > mask) {
+          return added.next();
+        }
+        int data = dataStart + buffer.getInt(HEADER_BYTES + slot * SLOT_BYTES + 4);
+        char[] chars = new char[buffer.getInt(data)];
+        for (int i = 0; i < chars.length; i++) {
+          chars[i] = buffer.getChar(data + 4 + i * 2);
+        }
+        slot = nextSlot(slot + 1);
+        return chars;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+}
@@ -22,7 +22,7 @@ import com.twitter.penguin.korean.normalizer.KoreanNormalizer
 import com.twitter.penguin.korean.phrase_extractor.KoreanPhraseExtractor
 import com.twitter.penguin.korean.phrase_extractor.KoreanPhraseExtractor.KoreanPhrase
 import com.twitter.penguin.korean.stemmer.KoreanStemmer
-import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken
+import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.{AlignedToken, KoreanToken}
 import com.twitter.penguin.korean.tokenizer._
 import com.twitter.penguin.korean.util.{KoreanDictionaryProvider, KoreanPos}
 
@@ -62,6 +62,32 @@ object TwitterKoreanProcessor {
     KoreanTokenizer.tokenize(text, profile)
   }
 
+  /**
+   * Normalize and tokenize text. Tokens carry offsets into the normalized text, and
+   * AlignedToken.originalOffset/originalLength point back into the input text.
+   *
+   * @param text input text
+   * @param profile tokenizer profile
+   * @return A sequence of AlignedTokens.
+   */
+  def normalizeAndTokenize(text: CharSequence,
+      profile: TokenizerProfile = TokenizerProfile.defaultProfile): Seq[AlignedToken] = {
+    val normalized = KoreanNormalizer.normalizeWithOffsets(text)
+    KoreanTokenizer.tokenize(normalized.text, profile).map { token =>
+      val start = normalized.offsets.toOriginal(token.offset)
+      AlignedToken(token, start, normalized.offsets.toOriginal(token.offset + token.length) - start)
+    }
+  }
+
+  /**
+   * Tokenize text and stem predicates chunk by chunk. Same as stem(tokenize(text)).
+   *
+   * @param text input text
+   * @return A sequence of stemmed KoreanTokens.
+   */
+  def tokenizeAndStem(text: CharSequence): Seq[KoreanToken] =
+    KoreanTokenizer.tokenize(text, TokenizerProfile.defaultProfile, stem = true)
+
   /**
    * Add user-defined word list to the noun dictionary. Spaced words are not allowed.
    *
@@ -122,4 +148,14 @@ object TwitterKoreanProcessor {
   def detokenize(tokens: Iterable[String]): String = {
     KoreanDetokenizer.detokenize(tokens)
   }
+
+  /**
+   * Detokenize many lists of words, reusing buffers between them.
+   *
+   * @param tokens Lists of words.
+   * @return Detokenized strings.
+   */
+  def detokenizeAll(tokens: Iterable[Iterable[String]]): Seq[String] = {
+    KoreanDetokenizer.detokenizeAll(tokens)
+  }
 }
\ No newline at end of file
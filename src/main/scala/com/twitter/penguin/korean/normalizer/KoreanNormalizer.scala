@@ -27,6 +27,83 @@ import com.twitter.penguin.korean.util.KoreanPos._
 
 import scala.util.matching.Regex.Match
 
+/**
+ * Normalized text with a map from its offsets back to the input offsets.
+ */
+case class NormalizedText(text: CharSequence, offsets: OffsetMap)
+
+/**
+ * Maps offsets in normalized text back to the original text. Only the offsets where the
+ * cumulative difference changes are stored, in two growing int arrays.
+ */
+class OffsetMap {
+  private[this] var points = new Array[Int](8)
+  private[this] var diffs = new Array[Int](8)
+  private[this] var size = 0
+
+  private[this] def lastDiff: Int = if (size == 0) 0 else diffs(size - 1)
+
+  private[this] def addPoint(normalizedOffset: Int, diff: Int): Unit = {
+    if (size == points.length) {
+      points = java.util.Arrays.copyOf(points, size * 2)
+      diffs = java.util.Arrays.copyOf(diffs, size * 2)
+    }
+    points(size) = normalizedOffset
+    diffs(size) = diff
+    size += 1
+  }
+
+  /**
+   * Record that `original` was replaced by `normalized`, written at normalizedStart.
+   * Only the span between the common prefix and the common suffix is treated as changed.
+   * A shortened span maps its end to the original end; the extra characters of a lengthened
+   * span map to the end of the original span.
+   */
+  protected[korean] def addReplacement(normalizedStart: Int, original: CharSequence,
+      normalized: CharSequence): Unit = {
+    val minLength = math.min(original.length, normalized.length)
+    var prefix = 0
+    while (prefix < minLength && original.charAt(prefix) == normalized.charAt(prefix)) prefix += 1
+    var suffix = 0
+    while (suffix < minLength - prefix &&
+        original.charAt(original.length - 1 - suffix) == normalized.charAt(normalized.length - 1 - suffix)) {
+      suffix += 1
+    }
+
+    val originalLength = original.length - prefix - suffix
+    val normalizedLength = normalized.length - prefix - suffix
+    val start = normalizedStart + prefix
+    val diff = lastDiff
+    if (normalizedLength < originalLength) {
+      addPoint(start + normalizedLength, diff + originalLength - normalizedLength)
+    } else {
+      (1 to normalizedLength - originalLength).foreach { i =>
+        addPoint(start + originalLength + i, diff - i)
+      }
+    }
+  }
+
+  /**
+   * @param normalizedOffset offset in the normalized text
+   * @return the corresponding offset in the original text
+   */
+  def toOriginal(normalizedOffset: Int): Int = {
+    var lo = 0
+    var hi = size - 1
+    var found = -1
+    while (lo <= hi) {
+      val mid = (lo + hi) >>> 1
+      if (points(mid) <= normalizedOffset) {
+        found = mid
+        lo = mid + 1
+      } else {
+        hi = mid - 1
+      }
+    }
+    if (found < 0) normalizedOffset else normalizedOffset + diffs(found)
+  }
+}
+
 /**
  * Normalize Korean colloquial text
  */
@@ -54,6 +131,30 @@ object KoreanNormalizer {
     EXTENTED_KOREAN_REGEX.replaceAllIn(input, m => normalizeKoreanChunk(m.group(0)).toString)
   }
 
+  /**
+   * Normalize text and record how offsets moved, so tokens of the normalized text can be
+   * mapped back to the input (ㅋㅋㅋㅋ -> ㅋㅋ, 소린가 -> 소리인가).
+   *
+   * @param input input CharSequence
+   * @return normalized text and its OffsetMap
+   */
+  def normalizeWithOffsets(input: CharSequence): NormalizedText = {
+    val m = EXTENTED_KOREAN_REGEX.pattern.matcher(input)
+    val output = new java.lang.StringBuilder(input.length)
+    val offsets = new OffsetMap
+    var last = 0
+    while (m.find()) {
+      output.append(input, last, m.start)
+      val chunk = m.group(0)
+      val normalized = normalizeKoreanChunk(chunk)
+      if (normalized != chunk) offsets.addReplacement(output.length, chunk, normalized)
+      output.append(normalized)
+      last = m.end
+    }
+    output.append(input, last, input.length)
+    NormalizedText(output, offsets)
+  }
+
   private[this] def normalizeKoreanChunk(input: CharSequence): CharSequence = {
     // Normalize endings: 안됔ㅋㅋㅋ -> 안돼ㅋㅋ
     val endingNormalized = KOREAN_TO_NORMALIZE_REGEX.replaceAllIn(
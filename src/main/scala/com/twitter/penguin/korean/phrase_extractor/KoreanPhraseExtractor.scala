@@ -20,12 +20,12 @@ object KoreanPhraseExtractor {
   private val ModifyingPredicateEndings: Set[Char] = Set('ㄹ', 'ㄴ')
   private val ModifyingPredicateExceptions: Set[Char] = Set('만')
 
-  private val PhraseTokens = Set(Noun, ProperNoun, Space)
+  private val PhraseTokens = KoreanPosSet(Noun, ProperNoun, Space)
   private val ConjunctionJosa = Set("와", "과", "의")
   type KoreanPhraseChunk = Seq[KoreanPhrase]
 
-  private val PhraseHeadPoses = Set(Adjective, Noun, ProperNoun, Alpha, Number)
-  private val PhrasTailPoses = Set(Noun, ProperNoun, Alpha, Number)
+  private val PhraseHeadPoses = KoreanPosSet(Adjective, Noun, ProperNoun, Alpha, Number)
+  private val PhrasTailPoses = KoreanPosSet(Noun, ProperNoun, Alpha, Number)
 
   /**
    * 0 for optional, 1 for required
@@ -0,0 +1,298 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.phrase_extractor
+
+import com.twitter.penguin.korean.phrase_extractor.KoreanPhraseExtractor.KoreanPhrase
+import com.twitter.penguin.korean.phrase_extractor.TrendingPhraseAggregator._
+import com.twitter.penguin.korean.util.KoreanPos._
+
+import scala.util.hashing.MurmurHash3
+
+object TrendingPhraseAggregator {
+  private val HeadPoses = KoreanPosSet(Noun, ProperNoun)
+
+  case class TrendingPhrase(head: String, text: String, count: Long) {
+    override def toString: String = s"$text($head: $count)"
+  }
+
+  /**
+   * Noun head of a phrase: the last noun token (이날 미국의 수백만 소비자들 -> 소비자들).
+   * Phrases without a noun token (hashtags, cashtags, alphanumerics) are keyed by their text.
+   */
+  protected[korean] def phraseHead(phrase: KoreanPhrase): String = {
+    phrase.tokens.reverseIterator.find(t => HeadPoses.contains(t.pos))
+        .map(_.text).getOrElse(phrase.text)
+  }
+
+  /**
+   * Count-Min sketch with a fixed depth x width counter table.
+   */
+  private[phrase_extractor] class CountMinSketch(depth: Int, width: Int) {
+    private[this] val table = Array.ofDim[Long](depth, width)
+
+    private[this] def slot(key: String, row: Int): Int = {
+      val h = MurmurHash3.stringHash(key, row * 0x9747b28c)
+      (h & Int.MaxValue) % width
+    }
+
+    def add(key: String, count: Long): Long = {
+      var min = Long.MaxValue
+      var row = 0
+      while (row < depth) {
+        val i = slot(key, row)
+        table(row)(i) += count
+        if (table(row)(i) < min) min = table(row)(i)
+        row += 1
+      }
+      min
+    }
+
+    def estimate(key: String): Long = {
+      var min = Long.MaxValue
+      var row = 0
+      while (row < depth) {
+        val c = table(row)(slot(key, row))
+        if (c < min) min = c
+        row += 1
+      }
+      min
+    }
+
+    def clear(): Unit = table.foreach(java.util.Arrays.fill(_, 0L))
+  }
+
+  /**
+   * Space-Saving heavy-hitter summary holding at most `capacity` heads. When full, the head
+   * with the lowest count is replaced. Counts here only rank candidates; reported counts
+   * come from the Count-Min sketch.
+   *
+   * The slots form a binary min-heap on count, with `index` tracking the slot of each head,
+   * so an offer costs O(log capacity) rather than a scan for the minimum.
+   */
+  private[phrase_extractor] class SpaceSaving(capacity: Int) {
+    private[this] val heads = new Array[String](capacity)
+    private[this] val texts = new Array[String](capacity)
+    private[this] val counts = new Array[Long](capacity)
+    private[this] val index = new java.util.HashMap[String, Integer](capacity * 2)
+    private[this] var size = 0
+
+    def offer(head: String, text: String, count: Long): Unit = {
+      val existing = index.get(head)
+      if (existing != null) {
+        counts(existing) = count
+        texts(existing) = text
+        siftUp(siftDown(existing))
+      } else if (size < capacity) {
+        heads(size) = head
+        texts(size) = text
+        counts(size) = count
+        index.put(head, size)
+        size += 1
+        siftUp(size - 1)
+      } else if (count > counts(0)) {
+        index.remove(heads(0))
+        heads(0) = head
+        texts(0) = text
+        counts(0) = count
+        index.put(head, 0)
+        siftDown(0)
+      }
+    }
+
+    private[this] def swap(i: Int, j: Int): Unit = {
+      val head = heads(i)
+      val text = texts(i)
+      val count = counts(i)
+      heads(i) = heads(j)
+      texts(i) = texts(j)
+      counts(i) = counts(j)
+      heads(j) = head
+      texts(j) = text
+      counts(j) = count
+      index.put(heads(i), i)
+      index.put(heads(j), j)
+    }
+
+    private[this] def siftUp(slot: Int): Unit = {
+      var i = slot
+      while (i > 0 && counts(i) < counts((i - 1) >> 1)) {
+        swap(i, (i - 1) >> 1)
+        i = (i - 1) >> 1
+      }
+    }
+
+    /**
+     * @return the final slot
+     */
+    private[this] def siftDown(slot: Int): Int = {
+      var i = slot
+      var done = false
+      while (!done) {
+        val left = 2 * i + 1
+        val right = left + 1
+        var min = i
+        if (left < size && counts(left) < counts(min)) min = left
+        if (right < size && counts(right) < counts(min)) min = right
+        if (min == i) {
+          done = true
+        } else {
+          swap(i, min)
+          i = min
+        }
+      }
+      i
+    }
+
+    def foreach(f: (String, String) => Unit): Unit = {
+      var i = 0
+      while (i < size) {
+        f(heads(i), texts(i))
+        i += 1
+      }
+    }
+
+    def clear(): Unit = {
+      index.clear()
+      java.util.Arrays.fill(heads.asInstanceOf[Array[AnyRef]], null)
+      java.util.Arrays.fill(texts.asInstanceOf[Array[AnyRef]], null)
+      size = 0
+    }
+  }
+
+  private class Bucket(depth: Int, width: Int, capacity: Int) {
+    var epoch: Long = -1L
+    val sketch = new CountMinSketch(depth, width)
+    val heavyHitters = new SpaceSaving(capacity)
+
+    def reset(newEpoch: Long): Unit = {
+      sketch.clear()
+      heavyHitters.clear()
+      epoch = newEpoch
+    }
+  }
+}
+
+/**
+ * Aggregates the output of KoreanPhraseExtractor.extractPhrases over a sliding time window
+ * in fixed memory, regardless of the number of distinct phrases.
+ *
+ * The window is split into `bucketCount` time buckets. Each bucket keeps a Count-Min sketch
+ * and a Space-Saving top-K summary keyed by the noun head of the phrase, so variants such as
+ * "미국의 수백만 소비자들" and "소비자들" are counted together. Buckets are locked individually,
+ * so many threads can add phrases concurrently.
+ *
+ * @param windowMillis Length of the sliding window.
+ * @param bucketCount Number of time buckets in the window.
+ * @param capacity Number of heavy hitters tracked per bucket.
+ * @param depth Count-Min sketch depth (number of hash rows).
+ * @param width Count-Min sketch width (counters per row).
+ */
+class TrendingPhraseAggregator(windowMillis: Long = 60 * 60 * 1000L,
+    bucketCount: Int = 12,
+    capacity: Int = 1000,
+    depth: Int = 4,
+    width: Int = 1 << 16) {
+  require(windowMillis >= bucketCount && bucketCount > 0, "Invalid window configuration")
+
+  private[this] val bucketMillis = windowMillis / bucketCount
+  private[this] val buckets = Array.fill(bucketCount)(new Bucket(depth, width, capacity))
+
+  /**
+   * Add phrases extracted from a single tweet.
+   *
+   * @param phrases Output of KoreanPhraseExtractor.extractPhrases
+   * @param timestamp Event time in milliseconds
+   */
+  def add(phrases: Seq[KoreanPhrase], timestamp: Long = System.currentTimeMillis()): Unit = {
+    val epoch = timestamp / bucketMillis
+    val bucket = buckets((epoch % bucketCount).toInt)
+    bucket.synchronized {
+      if (bucket.epoch < epoch) bucket.reset(epoch)
+      if (bucket.epoch == epoch) {
+        phrases.foreach { phrase =>
+          val head = phraseHead(phrase)
+          bucket.heavyHitters.offer(head, phrase.text, bucket.sketch.add(head, 1L))
+        }
+      }
+    }
+  }
+
+  /**
+   * Top-N trending phrases in the window ending at `now`, merged by noun head.
+   *
+   * @param n Number of phrases to return
+   * @param now End of the window in milliseconds
+   * @return TrendingPhrases sorted by descending count
+   */
+  def topN(n: Int, now: Long = System.currentTimeMillis()): Seq[TrendingPhrase] = {
+    val currentEpoch = now / bucketMillis
+
+    // The epoch of each live bucket when its heavy hitters were read; Long.MinValue if not live.
+    val epochs = new Array[Long](bucketCount)
+    val candidates = new java.util.HashMap[String, String]()
+    var b = 0
+    while (b < bucketCount) {
+      val bucket = buckets(b)
+      epochs(b) = bucket.synchronized {
+        if (bucket.epoch > currentEpoch - bucketCount && bucket.epoch <= currentEpoch) {
+          bucket.heavyHitters.foreach((head, text) => candidates.put(head, text))
+          bucket.epoch
+        } else {
+          Long.MinValue
+        }
+      }
+      b += 1
+    }
+
+    val heads = new Array[String](candidates.size)
+    val texts = new Array[String](candidates.size)
+    val it = candidates.entrySet().iterator()
+    var i = 0
+    while (it.hasNext) {
+      val e = it.next()
+      heads(i) = e.getKey
+      texts(i) = e.getValue
+      i += 1
+    }
+
+    // Estimate every candidate in one pass per bucket, skipping a bucket that was reset for a
+    // newer epoch since its heavy hitters were read.
+    val counts = new Array[Long](heads.length)
+    b = 0
+    while (b < bucketCount) {
+      val bucket = buckets(b)
+      if (epochs(b) != Long.MinValue) {
+        bucket.synchronized {
+          if (bucket.epoch == epochs(b)) {
+            i = 0
+            while (i < heads.length) {
+              counts(i) += bucket.sketch.estimate(heads(i))
+              i += 1
+            }
+          }
+        }
+      }
+      b += 1
+    }
+
+    heads.indices.filter(counts(_) > 0)
+        .map(i => TrendingPhrase(heads(i), texts(i), counts(i)))
+        .sortBy(p => (-p.count, p.head)).take(n)
+  }
+}
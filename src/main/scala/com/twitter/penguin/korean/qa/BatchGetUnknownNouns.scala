@@ -18,52 +18,276 @@
 
 package com.twitter.penguin.korean.qa
 
-import java.util.logging.Logger
+import java.io._
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger, AtomicReference}
+import java.util.concurrent.{ArrayBlockingQueue, ThreadPoolExecutor, TimeUnit}
+import java.util.logging.{Level, Logger}
+import java.util.zip.GZIPInputStream
 
 import com.twitter.penguin.korean.TwitterKoreanProcessor
-import com.twitter.penguin.korean.tokenizer.KoreanChunker._
-import com.twitter.penguin.korean.tokenizer.KoreanTokenizer._
-import com.twitter.penguin.korean.util.KoreanPos
 
-import scala.io.Source
+import scala.collection.mutable.ArrayBuffer
 
 /**
- * Find unknown nouns from a file of tweets.
+ * Mine unknown nouns from a directory of tweet corpora (one tweet per line, plain or .gz).
  *
- * Program arguments example = "~/korean_201407_100"
+ * Usage: BatchGetUnknownNouns [--workers=N] [--max-entries=N] [--min-count=N] [--top=N]
+ *                             [--tmp=dir] input_dir output_file
+ *
+ * Unknown tokens are counted on N workers in sharded counters. When the counters hold more
+ * than `max-entries` distinct words, they are spilled to a sorted run file. The runs are merged
+ * at the end and the `top` most frequent words seen at least `min-count` times are written
+ * one per line, most frequent first, so the list can be appended to a noun dictionary and
+ * cleaned up with tools.DeduplicateAndSortDictionaries. Counts are written to output_file.tsv.
  */
 object BatchGetUnknownNouns {
   private val LOG = Logger.getLogger(getClass.getSimpleName)
-  private val VERBOSE = true
 
-  case class ChunkWithTweet(chunk: String, tweet: String)
+  private val LinesPerTask = 1000
+  private val Shards = 64
+
+  case class Options(input: String = null,
+      output: String = null,
+      workers: Int = Runtime.getRuntime.availableProcessors(),
+      maxEntries: Int = 2000000,
+      minCount: Int = 5,
+      top: Int = 100000,
+      tmp: String = System.getProperty("java.io.tmpdir"))
+
+  case class WordCount(word: String, count: Long)
+
+  /**
+   * Word counters split into lock-striped shards. When the number of distinct words exceeds
+   * maxEntries, one thread drains the shards into a sorted run file while the others keep
+   * counting.
+   */
+  class ShardedCounter(maxEntries: Int, tmpDir: File) {
+    private[this] val shards = Array.fill(Shards)(new java.util.HashMap[String, Array[Long]]())
+    private[this] val entries = new AtomicInteger()
+    private[this] val spilling = new AtomicBoolean()
+    private[this] val runFiles = new java.util.concurrent.ConcurrentLinkedQueue[File]()
+
+    def increment(word: String): Unit = {
+      val shard = shards((word.hashCode & Int.MaxValue) % Shards)
+      shard.synchronized {
+        val counter = shard.get(word)
+        if (counter == null) {
+          shard.put(word, Array(1L))
+          entries.incrementAndGet()
+        } else {
+          counter(0) += 1
+        }
+      }
+      if (entries.get() > maxEntries && spilling.compareAndSet(false, true)) {
+        try spill() finally spilling.set(false)
+      }
+    }
+
+    /**
+     * Drain all shards into a run file sorted by word.
+     */
+    def spill(): Unit = {
+      val drained = new ArrayBuffer[WordCount](entries.get())
+      shards.foreach { shard =>
+        shard.synchronized {
+          val it = shard.entrySet().iterator()
+          while (it.hasNext) {
+            val e = it.next()
+            drained += WordCount(e.getKey, e.getValue()(0))
+          }
+          entries.addAndGet(-shard.size())
+          shard.clear()
+        }
+      }
+      if (drained.nonEmpty) {
+        val run = File.createTempFile("unknown-nouns-", ".run", tmpDir)
+        run.deleteOnExit()
+        val out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(run), StandardCharsets.UTF_8))
+        drained.sortBy(_.word).foreach { wc =>
+          out.write(wc.word)
+          out.write('\t')
+          out.write(wc.count.toString)
+          out.write('\n')
+        }
+        out.close()
+        runFiles.add(run)
+        LOG.log(Level.INFO, "Spilled %d words to %s".format(drained.size, run))
+      }
+    }
+
+    def runs: Seq[File] = runFiles.toArray(new Array[File](0)).toSeq
+  }
+
+  private class RunReader(file: File) {
+    private[this] val reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))
+    var current: WordCount = null
+    advance()
+
+    def advance(): Unit = {
+      val line = reader.readLine()
+      current = if (line == null) {
+        reader.close()
+        null
+      } else {
+        val tab = line.lastIndexOf('\t')
+        WordCount(line.substring(0, tab), line.substring(tab + 1).toLong)
+      }
+    }
+  }
+
+  /**
+   * K-way merge of sorted runs. Counts of the same word are summed and the `top` most frequent
+   * words with at least `minCount` occurrences are kept.
+   */
+  def mergeRuns(runs: Seq[File], minCount: Int, top: Int): Seq[WordCount] = {
+    val readers = new java.util.PriorityQueue[RunReader](math.max(runs.size, 1),
+      new java.util.Comparator[RunReader] {
+        override def compare(a: RunReader, b: RunReader): Int = a.current.word.compareTo(b.current.word)
+      })
+    runs.map(new RunReader(_)).filter(_.current != null).foreach(readers.add)
+
+    // The head is the worst of the best: the lowest count, then the last word.
+    val best = new java.util.PriorityQueue[WordCount](top + 1, new java.util.Comparator[WordCount] {
+      override def compare(a: WordCount, b: WordCount): Int = {
+        val byCount = java.lang.Long.compare(a.count, b.count)
+        if (byCount != 0) byCount else b.word.compareTo(a.word)
+      }
+    })
+
+    while (!readers.isEmpty) {
+      val word = readers.peek().current.word
+      var count = 0L
+      while (!readers.isEmpty && readers.peek().current.word == word) {
+        val r = readers.poll()
+        count += r.current.count
+        r.advance()
+        if (r.current != null) readers.add(r)
+      }
+      if (count >= minCount) {
+        best.add(WordCount(word, count))
+        if (best.size > top) best.poll()
+      }
+    }
+
+    // Drain worst first into the array from the back, leaving it sorted by (-count, word).
+    val ranked = new Array[WordCount](best.size)
+    var i = ranked.length
+    while (!best.isEmpty) {
+      i -= 1
+      ranked(i) = best.poll()
+    }
+    ranked.toSeq
+  }
+
+  private def readLines(file: File): BufferedReader = {
+    val in: InputStream = if (file.getName.endsWith(".gz")) {
+      new GZIPInputStream(new FileInputStream(file), 1 << 16)
+    } else {
+      new FileInputStream(file)
+    }
+    new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)
+  }
+
+  def parseArgs(args: Array[String]): Option[Options] = {
+    args.foldLeft(Option(Options())) {
+      case (Some(o), arg) if arg.startsWith("--workers=") =>
+        Some(o.copy(workers = arg.stripPrefix("--workers=").toInt))
+      case (Some(o), arg) if arg.startsWith("--max-entries=") =>
+        Some(o.copy(maxEntries = arg.stripPrefix("--max-entries=").toInt))
+      case (Some(o), arg) if arg.startsWith("--min-count=") =>
+        Some(o.copy(minCount = arg.stripPrefix("--min-count=").toInt))
+      case (Some(o), arg) if arg.startsWith("--top=") =>
+        Some(o.copy(top = arg.stripPrefix("--top=").toInt))
+      case (Some(o), arg) if arg.startsWith("--tmp=") =>
+        Some(o.copy(tmp = arg.stripPrefix("--tmp=")))
+      case (Some(o), arg) if !arg.startsWith("--") && o.input == null => Some(o.copy(input = arg))
+      case (Some(o), arg) if !arg.startsWith("--") && o.output == null => Some(o.copy(output = arg))
+      case _ => None
+    }.filter(o => o.input != null && o.output != null)
+  }
 
   def main(args: Array[String]) {
-    if (args.length != 1) {
-      println("The first arg should be an input file path of Korean tweets.")
+    val options = parseArgs(args).getOrElse {
+      println("Usage: BatchGetUnknownNouns [--workers=N] [--max-entries=N] [--min-count=N] " +
+          "[--top=N] [--tmp=dir] input_dir output_file")
       return
     }
-    val chunksWithUnknowns = Source.fromFile(args(0)).getLines().foldLeft(List[ChunkWithTweet]()) {
-      case (l: List[ChunkWithTweet], line: String) if line.trim.length > 5 =>
-        chunk(line).flatMap {
-          case t: KoreanToken if t.pos == KoreanPos.Korean && tokenize(t.text).exists(_.unknown) =>
-            Some(ChunkWithTweet(t.text, line.trim))
-          case t: KoreanToken => None
-        }.toList ::: l
-      case (l: List[ChunkWithTweet], line: String) => l
-    }.toSet
-
-    chunksWithUnknowns.toSeq.sortBy(_.chunk).foreach {
-      chunkWithTweet: ChunkWithTweet =>
-        println(chunkWithTweet.tweet)
-        println(TwitterKoreanProcessor
-            .tokenize(chunkWithTweet.tweet)
-            .mkString(" "))
-
-        println(chunkWithTweet.chunk + ": " +
-            tokenize(chunkWithTweet.chunk).mkString(" "))
-        println()
+    run(options)
+  }
+
+  def run(options: Options): Unit = {
+    val inputDir = new File(options.input)
+    val files = Option(inputDir.listFiles()).getOrElse(Array(inputDir)).filter(_.isFile).sortBy(_.getName)
+
+    val counter = new ShardedCounter(options.maxEntries, new File(options.tmp))
+    val pool = new ThreadPoolExecutor(options.workers, options.workers, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue[java.lang.Runnable](options.workers * 4),
+      new ThreadPoolExecutor.CallerRunsPolicy)
+
+    // The first failed task; reading stops and the run fails once the pool has drained.
+    val failure = new AtomicReference[Throwable]()
+
+    def submit(batch: Array[String]): Unit = {
+      pool.execute(new java.lang.Runnable {
+        override def run(): Unit = try {
+          batch.foreach { line =>
+            TwitterKoreanProcessor.tokenize(line).foreach { t =>
+              if (t.unknown) counter.increment(t.text)
+            }
+          }
+        } catch {
+          case e: Throwable => failure.compareAndSet(null, e)
+        }
+      })
+    }
+
+    val t0 = System.currentTimeMillis()
+    var lines = 0L
+    try {
+      files.iterator.takeWhile(_ => failure.get == null).foreach { file =>
+        LOG.log(Level.INFO, "Reading " + file)
+        val reader = readLines(file)
+        try {
+          var batch = new ArrayBuffer[String](LinesPerTask)
+          var line = reader.readLine()
+          while (line != null && failure.get == null) {
+            batch += line
+            lines += 1
+            if (batch.size == LinesPerTask) {
+              submit(batch.toArray)
+              batch = new ArrayBuffer[String](LinesPerTask)
+            }
+            line = reader.readLine()
+          }
+          if (batch.nonEmpty) submit(batch.toArray)
+        } finally {
+          reader.close()
+        }
+      }
+    } finally {
+      pool.shutdown()
+      pool.awaitTermination(Long.MaxValue, TimeUnit.MILLISECONDS)
+    }
+    if (failure.get != null) {
+      counter.runs.foreach(_.delete())
+      throw new RuntimeException("Failed to tokenize a batch", failure.get)
+    }
+    counter.spill()
+
+    val ranked = mergeRuns(counter.runs, options.minCount, options.top)
+    counter.runs.foreach(_.delete())
+
+    val words = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(options.output), StandardCharsets.UTF_8))
+    val counts = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(options.output + ".tsv"), StandardCharsets.UTF_8))
+    ranked.foreach { wc =>
+      words.write(wc.word + "\n")
+      counts.write(wc.word + "\t" + wc.count + "\n")
     }
+    words.close()
+    counts.close()
 
+    LOG.log(Level.INFO, "Tokenized %d lines from %d files in %d s. Wrote %d candidates to %s".format(
+      lines, files.length, (System.currentTimeMillis() - t0) / 1000, ranked.size, options.output))
   }
 }
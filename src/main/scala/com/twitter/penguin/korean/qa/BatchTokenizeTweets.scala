@@ -18,79 +18,212 @@
 
 package com.twitter.penguin.korean.qa
 
+import java.io._
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Paths, StandardOpenOption}
+import java.util.concurrent._
+import java.util.concurrent.atomic.AtomicLong
 import java.util.logging.{Level, Logger}
+import java.util.zip.GZIPInputStream
 
 import com.twitter.penguin.korean.TwitterKoreanProcessor
 import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken
-import com.twitter.penguin.korean.util.KoreanPos
-
-import scala.io.Source
+import com.twitter.penguin.korean.util.{Json, LatencyHistogram}
 
 /**
- * Batch tokenize a file of Korean tweets.
+ * Tokenize a file of Korean tweets (one per line) on N worker threads and report throughput
+ * and latency percentiles.
+ *
+ * Usage: BatchTokenizeTweets [--workers=N] [--warmup=N] [--unordered]
+ *                            [--format=tsv|json] [--output=path] input_file[.gz]
  *
- * Program arguments example = "~/korean_201407_100"
+ * Plain input files are memory-mapped; .gz files are streamed. The first `warmup` lines are
+ * tokenized on the calling thread before the timer starts and are not reported.
  */
 object BatchTokenizeTweets {
+  private val LOG = Logger.getLogger(getClass.getSimpleName)
 
-  case class ParseTime(time: Long, chunk: String)
+  private val MaxInFlightPerWorker = 64
+
+  case class Options(input: String = null,
+      output: Option[String] = None,
+      workers: Int = Runtime.getRuntime.availableProcessors(),
+      warmup: Int = 1000,
+      ordered: Boolean = true,
+      json: Boolean = false)
+
+  private case class Result(line: String, tokens: Seq[KoreanToken], nanos: Long)
+
+  /**
+   * Reads lines from a memory-mapped file, remapping in windows so files larger than 2GB work.
+   */
+  private class MappedLineIterator(path: String) extends Iterator[String] {
+    private[this] val Window = 1L << 30
+    private[this] val channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)
+    private[this] val size = channel.size()
+    private[this] var position = 0L
+    private[this] var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, math.min(Window, size))
+    private[this] val line = new ByteArrayOutputStream(512)
+
+    private[this] def remaining: Boolean = buffer.hasRemaining || position + buffer.limit() < size
+
+    override def hasNext: Boolean = {
+      val more = remaining
+      if (!more) channel.close()
+      more
+    }
 
-  private val LOG = Logger.getLogger(getClass.getSimpleName)
-  private val VERBOSE = true
-  private val NON_NOUNS = Set(KoreanPos.Adjective, KoreanPos.Adverb, KoreanPos.Verb)
+    override def next(): String = {
+      line.reset()
+      var done = false
+      while (!done && remaining) {
+        if (!buffer.hasRemaining) {
+          position += buffer.limit()
+          buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, math.min(Window, size - position))
+        }
+        val b = buffer.get()
+        if (b == '\n') done = true else line.write(b)
+      }
+      new String(line.toByteArray, StandardCharsets.UTF_8).stripSuffix("\r")
+    }
+  }
+
+  private def readLines(path: String): Iterator[String] = {
+    if (path.endsWith(".gz")) {
+      val reader = new BufferedReader(new InputStreamReader(
+        new GZIPInputStream(new FileInputStream(path), 1 << 16), StandardCharsets.UTF_8))
+      Iterator.continually(reader.readLine()).takeWhile { l =>
+        if (l == null) reader.close()
+        l != null
+      }
+    } else {
+      new MappedLineIterator(path)
+    }
+  }
+
+  private def format(result: Result, json: Boolean): String = {
+    val sb = new java.lang.StringBuilder(result.line.length * 4)
+    if (json) {
+      sb.append("{\"text\":")
+      Json.appendString(result.line, sb)
+      sb.append(",\"nanos\":").append(result.nanos).append(",\"tokens\":")
+      Json.appendTokens(result.tokens, sb)
+      sb.append('}')
+    } else {
+      sb.append(result.line.replace('\t', ' ')).append('\t')
+      result.tokens.zipWithIndex.foreach { case (t, i) =>
+        if (i > 0) sb.append(' ')
+        sb.append(t.text).append('/').append(t.pos)
+        if (t.unknown) sb.append('*')
+      }
+    }
+    sb.toString
+  }
+
+  def parseArgs(args: Array[String]): Option[Options] = {
+    args.foldLeft(Option(Options())) {
+      case (Some(o), arg) if arg.startsWith("--workers=") =>
+        Some(o.copy(workers = arg.stripPrefix("--workers=").toInt))
+      case (Some(o), arg) if arg.startsWith("--warmup=") =>
+        Some(o.copy(warmup = arg.stripPrefix("--warmup=").toInt))
+      case (Some(o), "--unordered") => Some(o.copy(ordered = false))
+      case (Some(o), "--format=json") => Some(o.copy(json = true))
+      case (Some(o), "--format=tsv") => Some(o.copy(json = false))
+      case (Some(o), arg) if arg.startsWith("--output=") =>
+        Some(o.copy(output = Some(arg.stripPrefix("--output="))))
+      case (Some(o), arg) if !arg.startsWith("--") && o.input == null => Some(o.copy(input = arg))
+      case _ => None
+    }.filter(_.input != null)
+  }
 
   def main(args: Array[String]) {
-    if (args.length != 1) {
-      println("The first arg should be an input file of Korean tweets.")
+    val options = parseArgs(args).getOrElse {
+      println("Usage: BatchTokenizeTweets [--workers=N] [--warmup=N] [--unordered] " +
+          "[--format=tsv|json] [--output=path] input_file[.gz]")
       return
     }
-    val parseTimesAll = Source.fromFile(args(0)).getLines().foldLeft(List[ParseTime]()) {
-      case (l: List[ParseTime], line: String) =>
-        val t0 = System.currentTimeMillis()
-        val parsed = TwitterKoreanProcessor.tokenize(line)
-        val t1 = System.currentTimeMillis()
-
-        if (VERBOSE) {
-          println(parsed.map(t => t.text + "/" + t.pos).mkString(" "))
+    run(options)
+  }
+
+  def run(options: Options): Unit = {
+    val lines = readLines(options.input)
+
+    // Warm-up: loads the dictionaries and lets the JIT compile the hot paths.
+    val warmupStart = System.nanoTime()
+    var warmedUp = 0
+    while (warmedUp < options.warmup && lines.hasNext) {
+      TwitterKoreanProcessor.tokenize(lines.next())
+      warmedUp += 1
+    }
+    LOG.log(Level.INFO, "Warmed up with %d tweets in %d ms.".format(
+      warmedUp, (System.nanoTime() - warmupStart) / 1000000))
+
+    val out: Option[Writer] = options.output.map { path =>
+      new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8),
+        1 << 16)
+    }
+
+    val histogram = new LatencyHistogram
+    val chars = new AtomicLong()
+    val pool = Executors.newFixedThreadPool(options.workers)
+    val completion = new ExecutorCompletionService[Result](pool)
+    val pending = new java.util.ArrayDeque[Future[Result]]()
+    val maxInFlight = options.workers * MaxInFlightPerWorker
+
+    def emit(result: Result): Unit = {
+      out.foreach { w =>
+        w.write(format(result, options.json))
+        w.write('\n')
+      }
+    }
+
+    def drainOne(): Unit = {
+      // Ordered output waits for the oldest task; unordered output takes whichever finished first.
+      val result = if (options.ordered) pending.poll().get() else {
+        pending.poll()
+        completion.take().get()
+      }
+      emit(result)
+    }
+
+    // A failed task fails its get(); the finally keeps the pool threads from outliving it.
+    val start = System.nanoTime()
+    val elapsed = try {
+      lines.foreach { line =>
+        if (pending.size >= maxInFlight) drainOne()
+        val task = new Callable[Result] {
+          override def call(): Result = {
+            val t0 = System.nanoTime()
+            val tokens = TwitterKoreanProcessor.tokenize(line)
+            val nanos = System.nanoTime() - t0
+            histogram.record(nanos)
+            chars.addAndGet(line.length)
+            Result(line, tokens, nanos)
+          }
         }
-        ParseTime(t1 - t0, line.trim) :: l
+        pending.add(if (options.ordered) pool.submit(task) else completion.submit(task))
+      }
+      while (!pending.isEmpty) drainOne()
+      System.nanoTime() - start
+    } finally {
+      pool.shutdownNow()
+      out.foreach(_.close())
     }
 
-    val loadingTime = parseTimesAll.last
-
-    LOG.log(Level.INFO, "The first one \"%s\" took %d ms including the loading time.".format(loadingTime.chunk, loadingTime.time))
-
-    val parseTimes = parseTimesAll.init
-
-    val averageTweetLength = parseTimes.map(_.chunk.length).sum.toDouble / parseTimes.size
-
-    val averageTime = parseTimes.map(_.time).sum.toDouble / parseTimes.size
-    val maxItem = parseTimes.maxBy(_.time)
-
-    LOG.log(Level.INFO, ("Parsed %d items. \n" +
-        "       Total time: %d s \n" +
-        "       Average tweet length: %.2f chars \n" +
-        "       Average time per tweet: %.2f ms \n" +
-        "       Max time: %d ms, %s\n" +
-        "       Parsed: %s"
-        ).format(
-          parseTimes.size,
-          parseTimes.map(_.time).sum / 1000,
-          averageTweetLength,
-          averageTime,
-          maxItem.time,
-          maxItem.chunk,
-          TwitterKoreanProcessor.tokenize(maxItem.chunk).map {
-            case t if t.unknown => t.text.toString + t.pos + "*"
-            case t => t.text + t.pos.toString
-          }.mkString(" ")
+    val seconds = elapsed / 1e9
+    LOG.log(Level.INFO, ("Tokenized %d tweets on %d workers.\n" +
+        "       Total time: %.2f s\n" +
+        "       Throughput: %.1f tweets/s, %.1f chars/s\n" +
+        "       Latency p50: %d ns, p99: %d ns, p999: %d ns").format(
+          histogram.count,
+          options.workers,
+          seconds,
+          histogram.count / seconds,
+          chars.get() / seconds,
+          histogram.percentile(0.5),
+          histogram.percentile(0.99),
+          histogram.percentile(0.999)
         ))
   }
-
-  private def parseToString(parsed: Seq[KoreanToken]): String = {
-    parsed.map {
-      case t if t.unknown => t.text.toString + t.pos + "*"
-      case t => t.text + t.pos.toString
-    }.mkString(" ")
-  }
 }
@@ -0,0 +1,98 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.qa
+
+import java.io.{BufferedReader, FileInputStream, InputStream, InputStreamReader}
+import java.nio.charset.StandardCharsets
+import java.util.zip.GZIPInputStream
+
+import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken
+import com.twitter.penguin.korean.tokenizer.{KoreanTokenizer, TokenizerProfile}
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
+
+/**
+ * Compares TokenizerProfile.greedy with the default lattice on example_chunks.txt,
+ * example_tweets.txt and any files given as arguments (one text per line, optionally .gz).
+ *
+ * Usage: BenchmarkGreedyTokenizer [file[.gz] ...]
+ *
+ * Reports time and throughput of both modes, and the agreement of the greedy parses with the
+ * default ones: identical parses, tokens kept (same text, POS and offset) and token
+ * boundaries kept regardless of POS.
+ */
+object BenchmarkGreedyTokenizer {
+  private val Rounds = 3
+
+  private def time(texts: Seq[String], profile: TokenizerProfile): Long = {
+    texts.foreach(KoreanTokenizer.tokenize(_, profile))
+    val start = System.nanoTime()
+    (1 to Rounds).foreach(_ => texts.foreach(KoreanTokenizer.tokenize(_, profile)))
+    (System.nanoTime() - start) / Rounds
+  }
+
+  private def boundaries(tokens: Seq[KoreanToken]): Set[Int] = tokens.map(t => t.offset + t.length).toSet
+
+  private def readLines(path: String): Vector[String] = {
+    val stream: InputStream = if (path.endsWith(".gz")) {
+      new GZIPInputStream(new FileInputStream(path), 1 << 16)
+    } else {
+      new FileInputStream(path)
+    }
+    val reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))
+    try {
+      Iterator.continually(reader.readLine()).takeWhile(_ != null).filter(_.nonEmpty).toVector
+    } finally {
+      reader.close()
+    }
+  }
+
+  def main(args: Array[String]) {
+    val corpora = Seq("example_chunks.txt", "example_tweets.txt").map { resource =>
+      resource -> readFileByLineFromResources(resource).filter(_.nonEmpty).toVector
+    } ++ args.map(path => path -> readLines(path))
+
+    val lattice = TokenizerProfile.defaultProfile
+    val greedy = lattice.copy(greedy = true)
+
+    corpora.foreach { case (name, texts) =>
+      val chars = texts.map(_.length).sum
+      val nanos = time(texts, lattice)
+      val greedyNanos = time(texts, greedy)
+
+      val pairs = texts.map(t => (t, KoreanTokenizer.tokenize(t, lattice), KoreanTokenizer.tokenize(t, greedy)))
+      val differences = pairs.filter { case (_, expected, actual) => expected != actual }
+      val tokens = pairs.map(_._2.size).sum
+      val matchedTokens = pairs.map { case (_, expected, actual) => expected.toSet.intersect(actual.toSet).size }.sum
+      val matchedBoundaries = pairs.map { case (_, expected, actual) =>
+        boundaries(expected).intersect(boundaries(actual)).size
+      }.sum
+
+      println("%s: %d texts, %d chars".format(name, texts.size, chars))
+      println("  lattice: %.1f ms (%.0f chars/ms), greedy: %.1f ms (%.0f chars/ms), %.1fx".format(
+        nanos / 1e6, chars * 1e6 / nanos, greedyNanos / 1e6, chars * 1e6 / greedyNanos,
+        nanos.toDouble / greedyNanos))
+      println("  identical parses: %.2f%%, tokens kept: %.2f%%, boundaries kept: %.2f%%".format(
+        100.0 * (texts.size - differences.size) / texts.size, 100.0 * matchedTokens / math.max(tokens, 1),
+        100.0 * matchedBoundaries / math.max(tokens, 1)))
+      differences.take(20).foreach { case (text, expected, actual) =>
+        println("  %s\n    - %s\n    + %s".format(text, expected.mkString(" "), actual.mkString(" ")))
+      }
+    }
+  }
+}
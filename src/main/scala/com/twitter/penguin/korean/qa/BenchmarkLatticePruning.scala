@@ -0,0 +1,63 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.qa
+
+import com.twitter.penguin.korean.tokenizer.{KoreanTokenizer, TokenizerProfile}
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
+
+/**
+ * Compares the lattice with and without TokenizerProfile.scoreBoundPruning on example_chunks.txt
+ * or the given file: candidates built, time, and any chunk whose parse differs.
+ */
+object BenchmarkLatticePruning {
+  private val Rounds = 5
+
+  private def run(chunks: Seq[String], profile: TokenizerProfile): (Long, Long) = {
+    chunks.foreach(KoreanTokenizer.tokenize(_, profile))
+    KoreanTokenizer.resetChunkPathCounts()
+    val start = System.nanoTime()
+    (1 to Rounds).foreach(_ => chunks.foreach(KoreanTokenizer.tokenize(_, profile)))
+    val nanos = System.nanoTime() - start
+    val counts = KoreanTokenizer.chunkPathCounts
+    (counts("latticeCandidates") / Rounds, nanos / Rounds)
+  }
+
+  def main(args: Array[String]) {
+    val chunks = (if (args.isEmpty) {
+      readFileByLineFromResources("example_chunks.txt")
+    } else {
+      scala.io.Source.fromFile(args(0), "UTF-8").getLines()
+    }).filter(_.nonEmpty).toVector
+
+    val lattice = TokenizerProfile(dictionaryFastPath = false)
+    val pruned = lattice.copy(scoreBoundPruning = true)
+
+    val (built, latticeNanos) = run(chunks, lattice)
+    val (prunedBuilt, prunedNanos) = run(chunks, pruned)
+
+    val differences = chunks.filter(c => KoreanTokenizer.tokenize(c, lattice) != KoreanTokenizer.tokenize(c, pruned))
+    differences.foreach(c => println("Different parse: " + c))
+
+    println("%d chunks".format(chunks.size))
+    println("lattice: %d candidates, %.1f ms".format(built, latticeNanos / 1e6))
+    println("pruned:  %d candidates (%.1f%%), %.1f ms".format(
+      prunedBuilt, 100.0 * prunedBuilt / math.max(built, 1), prunedNanos / 1e6))
+    println("%d different parses".format(differences.size))
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.qa
+
+import com.twitter.penguin.korean.tokenizer.{KoreanTokenizer, TokenizerProfile}
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
+
+/**
+ * Compares KoreanTokenizer.tokenizeWithProfiles with one tokenize call per profile on
+ * example_chunks.txt and example_tweets.txt, for 2, 4 and 8 weight sets around the default
+ * profile: time, lattice candidates built and parses that differ (there should be none).
+ */
+object BenchmarkMultiProfileTokenizer {
+  private val Rounds = 3
+
+  private def profiles(n: Int): Seq[TokenizerProfile] = (0 until n).map { i =>
+    val scale = 1f + 0.1f * i
+    TokenizerProfile(freq = 0.2f * scale, unknown = 0.3f / scale, tokenCount = 0.18f * scale)
+  }
+
+  private def run(f: => Unit): (Long, Long) = {
+    f
+    KoreanTokenizer.resetChunkPathCounts()
+    val start = System.nanoTime()
+    (1 to Rounds).foreach(_ => f)
+    ((System.nanoTime() - start) / Rounds, KoreanTokenizer.chunkPathCounts("latticeCandidates") / Rounds)
+  }
+
+  def main(args: Array[String]) {
+    Seq("example_chunks.txt", "example_tweets.txt").foreach { resource =>
+      val texts = readFileByLineFromResources(resource).filter(_.nonEmpty).toVector
+      println("%s: %d texts".format(resource, texts.size))
+
+      Seq(2, 4, 8).foreach { n =>
+        val weights = profiles(n)
+        val (nanos, built) = run(texts.foreach(t => weights.foreach(KoreanTokenizer.tokenize(t, _))))
+        val (sharedNanos, sharedBuilt) = run(texts.foreach(KoreanTokenizer.tokenizeWithProfiles(_, weights)))
+
+        val differences = texts.count { t =>
+          KoreanTokenizer.tokenizeWithProfiles(t, weights).tokens != weights.map(KoreanTokenizer.tokenize(t, _))
+        }
+        println("  %d profiles: %.1f ms -> %.1f ms (%.1fx), candidates %d -> %d, %d different parses".format(
+          n, nanos / 1e6, sharedNanos / 1e6, nanos.toDouble / sharedNanos, built, sharedBuilt, differences))
+      }
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.qa
+
+import com.twitter.penguin.korean.tokenizer.{KoreanTokenizer, TokenizerProfile}
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
+
+/**
+ * Measures TokenizerProfile.unknownNounGate on example_chunks.txt and example_tweets.txt:
+ * lattice candidates built, time, and agreement with the ungated parses, which are the
+ * golden parses of the test suite.
+ */
+object BenchmarkUnknownNounGate {
+  private val Rounds = 3
+
+  private def run(texts: Seq[String], profile: TokenizerProfile): (Long, Long) = {
+    texts.foreach(KoreanTokenizer.tokenize(_, profile))
+    KoreanTokenizer.resetChunkPathCounts()
+    val start = System.nanoTime()
+    (1 to Rounds).foreach(_ => texts.foreach(KoreanTokenizer.tokenize(_, profile)))
+    (KoreanTokenizer.chunkPathCounts("latticeCandidates") / Rounds, (System.nanoTime() - start) / Rounds)
+  }
+
+  def main(args: Array[String]) {
+    Seq("example_chunks.txt", "example_tweets.txt").foreach { resource =>
+      val texts = readFileByLineFromResources(resource).filter(_.nonEmpty).toVector
+      val ungated = TokenizerProfile(dictionaryFastPath = false)
+      val gated = ungated.copy(unknownNounGate = true)
+
+      val (built, nanos) = run(texts, ungated)
+      val (gatedBuilt, gatedNanos) = run(texts, gated)
+
+      val pairs = texts.map(t => (t, KoreanTokenizer.tokenize(t, ungated), KoreanTokenizer.tokenize(t, gated)))
+      val differences = pairs.filter { case (_, expected, actual) => expected != actual }
+      val tokens = pairs.map(_._2.size).sum
+      val matchedTokens = pairs.map { case (_, expected, actual) => expected.toSet.intersect(actual.toSet).size }.sum
+
+      println("%s: %d texts".format(resource, texts.size))
+      println("  candidates: %d -> %d (%.1f%%), %.1f ms -> %.1f ms".format(built, gatedBuilt,
+        100.0 * gatedBuilt / math.max(built, 1), nanos / 1e6, gatedNanos / 1e6))
+      println("  identical parses: %.2f%%, tokens kept: %.2f%%".format(
+        100.0 * (texts.size - differences.size) / texts.size, 100.0 * matchedTokens / math.max(tokens, 1)))
+      differences.take(20).foreach { case (text, expected, actual) =>
+        println("  %s\n    - %s\n    + %s".format(text, expected.mkString(" "), actual.mkString(" ")))
+      }
+    }
+  }
+}
@@ -0,0 +1,297 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.server
+
+import java.io.{BufferedReader, InputStreamReader}
+import java.net.InetSocketAddress
+import java.nio.charset.StandardCharsets
+import java.util.concurrent._
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicLong}
+import java.util.logging.{Level, Logger}
+
+import com.sun.net.httpserver.{HttpExchange, HttpHandler, HttpServer}
+import com.twitter.penguin.korean.TwitterKoreanProcessor
+import com.twitter.penguin.korean.util.Json
+
+import scala.collection.JavaConversions._
+import scala.collection.mutable.ArrayBuffer
+import scala.util.Try
+
+/**
+ * Local HTTP service exposing the processor to non-JVM clients, so one warm set of
+ * dictionaries serves a whole host. Uses only the JDK's built-in HTTP server.
+ *
+ * Endpoints (POST, one UTF-8 text per line, response is a JSON array with one entry per line):
+ *   /normalize       normalized strings
+ *   /tokenize        token lists
+ *   /stem            stemmed token lists
+ *   /extractPhrases  phrase lists (texts are normalized and tokenized first)
+ *
+ * Texts from concurrent requests share one bounded work queue served by the workers, so the
+ * texts of a large request are spread over all workers and small requests interleave with it.
+ * Requests are handled by a fixed pool of handler threads, each waiting for the texts of one
+ * request. A request is rejected with 503 before its body is read when the queue is full,
+ * and after reading when its texts would take the queue past maxQueue. A body without a
+ * Content-Length gets 411 and one over maxBodyBytes gets 413. A request whose texts are not
+ * done within timeoutMillis gets 503 and its remaining texts are skipped.
+ *
+ * Usage: KoreanTextServer [--port=N] [--workers=N] [--handlers=N] [--max-queue=N]
+ *                         [--max-body-bytes=N] [--timeout-millis=N]
+ */
+object KoreanTextServer {
+  private val LOG = Logger.getLogger(getClass.getSimpleName)
+
+  case class Options(port: Int = 8080,
+      workers: Int = Runtime.getRuntime.availableProcessors(),
+      handlers: Int = 64,
+      maxQueue: Int = 10000,
+      maxBodyBytes: Long = 1L << 20,
+      timeoutMillis: Long = 10000L)
+
+  protected[korean] val Operations: Map[String, (String, java.lang.StringBuilder) => Unit] = Map(
+    "/normalize" -> { (text, out) =>
+      Json.appendString(TwitterKoreanProcessor.normalize(text), out)
+    },
+    "/tokenize" -> { (text, out) =>
+      Json.appendTokens(TwitterKoreanProcessor.tokenize(text), out)
+    },
+    "/stem" -> { (text, out) =>
+      Json.appendTokens(TwitterKoreanProcessor.stem(TwitterKoreanProcessor.tokenize(text)), out)
+    },
+    "/extractPhrases" -> { (text, out) =>
+      val tokens = TwitterKoreanProcessor.tokenize(TwitterKoreanProcessor.normalize(text))
+      Json.appendPhrases(TwitterKoreanProcessor.extractPhrases(tokens, filterSpam = true), out)
+    }
+  )
+
+  /**
+   * A request. Workers fill in results and count down; the handler thread waits. The first of
+   * the handler and stop() to claim responded sends the response.
+   */
+  private class Job(val exchange: HttpExchange, val texts: Array[String]) {
+    val results = new Array[String](texts.length)
+    val done = new CountDownLatch(texts.length)
+    val responded = new AtomicBoolean()
+    @volatile var error: Throwable = null
+  }
+
+  private case class WorkItem(op: (String, java.lang.StringBuilder) => Unit, job: Job, index: Int)
+
+  def parseArgs(args: Array[String]): Option[Options] = {
+    args.foldLeft(Option(Options())) {
+      case (Some(o), arg) if arg.startsWith("--port=") =>
+        Some(o.copy(port = arg.stripPrefix("--port=").toInt))
+      case (Some(o), arg) if arg.startsWith("--workers=") =>
+        Some(o.copy(workers = arg.stripPrefix("--workers=").toInt))
+      case (Some(o), arg) if arg.startsWith("--handlers=") =>
+        Some(o.copy(handlers = arg.stripPrefix("--handlers=").toInt))
+      case (Some(o), arg) if arg.startsWith("--max-queue=") =>
+        Some(o.copy(maxQueue = arg.stripPrefix("--max-queue=").toInt))
+      case (Some(o), arg) if arg.startsWith("--max-body-bytes=") =>
+        Some(o.copy(maxBodyBytes = arg.stripPrefix("--max-body-bytes=").toLong))
+      case (Some(o), arg) if arg.startsWith("--timeout-millis=") =>
+        Some(o.copy(timeoutMillis = arg.stripPrefix("--timeout-millis=").toLong))
+      case _ => None
+    }.filter(o => o.workers > 0 && o.handlers > 0 && o.maxQueue > 0 && o.timeoutMillis > 0)
+  }
+
+  def main(args: Array[String]) {
+    val options = parseArgs(args).getOrElse {
+      println("Usage: KoreanTextServer [--port=N] [--workers=N] [--handlers=N] [--max-queue=N] " +
+          "[--max-body-bytes=N] [--timeout-millis=N]")
+      return
+    }
+    val server = new KoreanTextServer(options)
+    val address = server.start()
+    LOG.log(Level.INFO, "Listening on " + address)
+  }
+}
+
+/**
+ * @param operations the handler of each path; KoreanTextServer.Operations by default
+ */
+class KoreanTextServer(options: KoreanTextServer.Options,
+    operations: Map[String, (String, java.lang.StringBuilder) => Unit] = KoreanTextServer.Operations) {
+  import KoreanTextServer._
+
+  private[this] val queue = new LinkedBlockingQueue[WorkItem]()
+  private[this] val queued = new AtomicLong()
+  private[this] val rejected = new AtomicLong()
+  private[this] val pending = ConcurrentHashMap.newKeySet[Job]()
+  @volatile private[this] var stopping = false
+  private[this] var server: HttpServer = null
+  private[this] var workers: Seq[Thread] = Seq()
+  private[this] var handlerPool: ExecutorService = null
+
+  /**
+   * Warms up the dictionaries, then starts the workers and the HTTP server.
+   *
+   * @return The bound address (useful with port 0).
+   */
+  def start(): InetSocketAddress = {
+    TwitterKoreanProcessor.extractPhrases(TwitterKoreanProcessor.tokenize("한국어 처리기를 시작합니다"))
+
+    workers = (1 to options.workers).map { i =>
+      val t = new Thread(new java.lang.Runnable {
+        override def run(): Unit = work()
+      }, "korean-text-worker-" + i)
+      t.setDaemon(true)
+      t.start()
+      t
+    }
+
+    handlerPool = Executors.newFixedThreadPool(options.handlers)
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", options.port), 0)
+    operations.foreach { case (path, op) =>
+      server.createContext(path, new HttpHandler {
+        override def handle(exchange: HttpExchange): Unit = serve(exchange, op)
+      })
+    }
+    server.setExecutor(handlerPool)
+    server.start()
+    server.getAddress
+  }
+
+  /**
+   * Answers the pending requests with 503, then stops the server, the handlers and the workers.
+   */
+  def stop(): Unit = {
+    stopping = true
+    pending.foreach(job => respondOnce(job, 503, "Shutting down\n"))
+    server.stop(0)
+    handlerPool.shutdownNow()
+    workers.foreach(_.interrupt())
+  }
+
+  def rejectedRequests: Long = rejected.get()
+
+  private[this] def work(): Unit = {
+    try {
+      while (true) {
+        val item = queue.take()
+        queued.decrementAndGet()
+        // Any failure, including an Error such as StackOverflowError on a pathological
+        // text, fails only its request; the worker carries on.
+        try {
+          if (!item.job.responded.get) {
+            val out = new java.lang.StringBuilder()
+            item.op(item.job.texts(item.index), out)
+            item.job.results(item.index) = out.toString
+          }
+        } catch {
+          case e: Throwable => item.job.error = e
+        } finally {
+          item.job.done.countDown()
+        }
+      }
+    } catch {
+      case e: InterruptedException => // Shutting down
+    }
+  }
+
+  private[this] def readTexts(exchange: HttpExchange): Array[String] = {
+    val reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody, StandardCharsets.UTF_8))
+    val texts = new ArrayBuffer[String]()
+    var line = reader.readLine()
+    while (line != null) {
+      texts += line
+      line = reader.readLine()
+    }
+    texts.toArray
+  }
+
+  private[this] def respond(exchange: HttpExchange, status: Int, body: String): Unit = {
+    try {
+      val bytes = body.getBytes(StandardCharsets.UTF_8)
+      exchange.getResponseHeaders.set("Content-Type",
+        if (status == 200) "application/json; charset=utf-8" else "text/plain; charset=utf-8")
+      exchange.sendResponseHeaders(status, bytes.length)
+      exchange.getResponseBody.write(bytes)
+    } catch {
+      case e: java.io.IOException => LOG.log(Level.FINE, "Failed to respond", e)
+    } finally {
+      exchange.close()
+    }
+  }
+
+  private[this] def respondOnce(job: Job, status: Int, body: String): Unit = {
+    if (job.responded.compareAndSet(false, true)) {
+      pending.remove(job)
+      respond(job.exchange, status, body)
+    }
+  }
+
+  private[this] def reject(exchange: HttpExchange, status: Int, body: String): Unit = {
+    rejected.incrementAndGet()
+    respond(exchange, status, body)
+  }
+
+  private[this] def serve(exchange: HttpExchange, op: (String, java.lang.StringBuilder) => Unit): Unit = {
+    if (exchange.getRequestMethod != "POST") {
+      respond(exchange, 405, "POST one text per line\n")
+      return
+    }
+
+    // Shed load before reading the body.
+    val contentLength = Option(exchange.getRequestHeaders.getFirst("Content-Length"))
+        .flatMap(h => Try(h.trim.toLong).toOption)
+    if (contentLength.isEmpty) {
+      reject(exchange, 411, "Content-Length required\n")
+      return
+    }
+    if (contentLength.get > options.maxBodyBytes) {
+      reject(exchange, 413, "Body over " + options.maxBodyBytes + " bytes\n")
+      return
+    }
+    if (stopping || queued.get >= options.maxQueue) {
+      reject(exchange, 503, "Overloaded\n")
+      return
+    }
+
+    val job = new Job(exchange, readTexts(exchange))
+    if (queued.addAndGet(job.texts.length) > options.maxQueue) {
+      queued.addAndGet(-job.texts.length)
+      reject(exchange, 503, "Overloaded\n")
+      return
+    }
+    pending.add(job)
+    job.texts.indices.foreach(i => queue.add(WorkItem(op, job, i)))
+
+    val finished = try {
+      job.done.await(options.timeoutMillis, TimeUnit.MILLISECONDS)
+    } catch {
+      case e: InterruptedException => false
+    }
+
+    if (!finished) {
+      respondOnce(job, 503, "Timed out\n")
+    } else if (job.error != null) {
+      respondOnce(job, 500, job.error.toString + "\n")
+    } else {
+      val out = new java.lang.StringBuilder()
+      out.append('[')
+      job.results.zipWithIndex.foreach { case (r, i) =>
+        if (i > 0) out.append(',')
+        out.append(r)
+      }
+      out.append("]\n")
+      respondOnce(job, 200, out.toString)
+    }
+  }
+}
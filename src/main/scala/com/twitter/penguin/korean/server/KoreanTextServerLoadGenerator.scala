@@ -0,0 +1,130 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.server
+
+import java.io.ByteArrayOutputStream
+import java.net.{HttpURLConnection, URL}
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.AtomicLong
+import java.util.logging.{Level, Logger}
+
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
+import com.twitter.penguin.korean.util.LatencyHistogram
+
+/**
+ * Loopback load generator for KoreanTextServer.
+ *
+ * Usage: KoreanTextServerLoadGenerator [--url=http://127.0.0.1:8080/tokenize]
+ *                                      [--clients=N] [--seconds=N] [--batch=N]
+ *
+ * Each client thread posts batches of example tweets in a closed loop. Without --url, a
+ * server is started in-process on an ephemeral port.
+ */
+object KoreanTextServerLoadGenerator {
+  private val LOG = Logger.getLogger(getClass.getSimpleName)
+
+  case class Options(url: Option[String] = None, clients: Int = 16, seconds: Int = 30, batch: Int = 1)
+
+  def parseArgs(args: Array[String]): Option[Options] = {
+    args.foldLeft(Option(Options())) {
+      case (Some(o), arg) if arg.startsWith("--url=") => Some(o.copy(url = Some(arg.stripPrefix("--url="))))
+      case (Some(o), arg) if arg.startsWith("--clients=") =>
+        Some(o.copy(clients = arg.stripPrefix("--clients=").toInt))
+      case (Some(o), arg) if arg.startsWith("--seconds=") =>
+        Some(o.copy(seconds = arg.stripPrefix("--seconds=").toInt))
+      case (Some(o), arg) if arg.startsWith("--batch=") =>
+        Some(o.copy(batch = arg.stripPrefix("--batch=").toInt))
+      case _ => None
+    }
+  }
+
+  private def post(url: URL, body: Array[Byte]): Int = {
+    val conn = url.openConnection().asInstanceOf[HttpURLConnection]
+    conn.setRequestMethod("POST")
+    conn.setDoOutput(true)
+    conn.getOutputStream.write(body)
+    conn.getOutputStream.close()
+    val status = conn.getResponseCode
+    val in = if (status == 200) conn.getInputStream else conn.getErrorStream
+    val sink = new ByteArrayOutputStream()
+    val buf = new Array[Byte](8192)
+    var n = in.read(buf)
+    while (n >= 0) {
+      sink.write(buf, 0, n)
+      n = in.read(buf)
+    }
+    in.close()
+    status
+  }
+
+  def main(args: Array[String]) {
+    val options = parseArgs(args).getOrElse {
+      println("Usage: KoreanTextServerLoadGenerator [--url=URL] [--clients=N] [--seconds=N] [--batch=N]")
+      return
+    }
+
+    val localServer = if (options.url.isEmpty) {
+      Some(new KoreanTextServer(KoreanTextServer.Options(port = 0)))
+    } else {
+      None
+    }
+    val url = new URL(options.url.getOrElse {
+      "http://127.0.0.1:" + localServer.get.start().getPort + "/tokenize"
+    })
+
+    val tweets = readFileByLineFromResources("example_tweets.txt").toArray
+    val histogram = new LatencyHistogram
+    val texts = new AtomicLong()
+    val shed = new AtomicLong()
+    val deadline = System.nanoTime() + options.seconds * 1000000000L
+
+    val clients = (0 until options.clients).map { c =>
+      new Thread(new java.lang.Runnable {
+        override def run(): Unit = {
+          var i = c
+          while (System.nanoTime() < deadline) {
+            val body = (0 until options.batch).map(j => tweets((i + j) % tweets.length)).mkString("\n")
+            i += options.batch * options.clients
+            val t0 = System.nanoTime()
+            val status = post(url, body.getBytes(StandardCharsets.UTF_8))
+            if (status == 200) {
+              histogram.record(System.nanoTime() - t0)
+              texts.addAndGet(options.batch)
+            } else {
+              shed.incrementAndGet()
+            }
+          }
+        }
+      })
+    }
+    val start = System.nanoTime()
+    clients.foreach(_.start())
+    clients.foreach(_.join())
+    val seconds = (System.nanoTime() - start) / 1e9
+    localServer.foreach(_.stop())
+
+    LOG.log(Level.INFO, ("Sent %d requests (%d texts) from %d clients in %.1f s, %d shed.\n" +
+        "       Throughput: %.1f requests/s, %.1f texts/s\n" +
+        "       Latency p50: %d ns, p99: %d ns, p999: %d ns").format(
+          histogram.count, texts.get(), options.clients, seconds, shed.get(),
+          histogram.count / seconds, texts.get() / seconds,
+          histogram.percentile(0.5), histogram.percentile(0.99), histogram.percentile(0.999)
+        ))
+  }
+}
@@ -4,12 +4,14 @@ import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken
 import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
 import com.twitter.penguin.korean.util.KoreanPos._
 
+import scala.collection.mutable.ArrayBuffer
+
 /**
  * Stems Adjectives and Verbs: 새로운 스테밍을 추가했었다. -> 새롭다 + 스테밍 + 을 + 추가하다
  */
 object KoreanStemmer {
-  private val Endings = Set(Eomi, PreEomi)
-  private val Predicates = Set(Verb, Adjective)
+  private val Endings = KoreanPosSet(Eomi, PreEomi)
+  private val Predicates = KoreanPosSet(Verb, Adjective)
 
   private val EndingsForNouns = Set("하다", "되다", "없다")
 
@@ -20,51 +22,80 @@ object KoreanStemmer {
    * @return A sequence of collapsed Korean tokens
    */
   def stem(tokens: Seq[KoreanToken]): Seq[KoreanToken] = {
-    if (!tokens.exists(t => t.pos == Verb || t.pos == Adjective)) {
-      return tokens
-    }
+    val builder = new StemBuilder
+    tokens.foreach(builder.add)
+    builder.result
+  }
+
+  private def validNounHeading(token: KoreanToken): Boolean = {
+    val heading = token.text.take(token.text.length - 2)
+
+    val validLength = token.text.length > 2
+    val validPos = token.pos == Verb
+    val validEndings = EndingsForNouns.contains(token.text.takeRight(2))
+    val validNouns = koreanDictionary(Noun).contains(heading)
+
+    validLength && validPos && validEndings && validNouns
+  }
+
+  /**
+   * Stems tokens incrementally as they are appended, so the tokenizer can stem the tokens of
+   * each chunk after parsing it instead of collecting the tokens of the whole text first. The
+   * lookups are those of stem: the stem of each predicate's text and the noun heading check.
+   *
+   * Endings are merged into the preceding predicate. An ending that follows a non-predicate is
+   * dropped, but only if the whole sequence contains a predicate; such endings are remembered
+   * and removed in result.
+   */
+  protected[korean] class StemBuilder {
+    private[this] val output = new ArrayBuffer[KoreanToken]()
+    private[this] var orphanEndings: List[Int] = Nil
+    private[this] var hasPredicate = false
 
-    val stemmed = tokens.foldLeft(List[KoreanToken]()) {
-      case (l: List[KoreanToken], token: KoreanToken) if l.nonEmpty && Endings.contains(token.pos) =>
-        if (Predicates.contains(l.head.pos)) {
-          val prevToken = l.head
-          KoreanToken(
+    def add(token: KoreanToken): Unit = {
+      if (output.nonEmpty && Endings.contains(token.pos)) {
+        val prevToken = output.last
+        if (Predicates.contains(prevToken.pos)) {
+          output(output.length - 1) = KoreanToken(
             prevToken.text,
             prevToken.pos, prevToken.offset, prevToken.length + token.length, prevToken.unknown
-          ) :: l.tail
+          )
         } else {
-          l
+          orphanEndings = output.length :: orphanEndings
+          output += token
         }
-      case (l: List[KoreanToken], token: KoreanToken) if Predicates.contains(token.pos) =>
-        val text = predicateStems(token.pos)(token.text)
-        KoreanToken(
-          text,
+      } else if (Predicates.contains(token.pos)) {
+        hasPredicate = true
+        val stemmed = KoreanToken(
+          predicateStems(token.pos)(token.text),
           token.pos, token.offset, token.length, token.unknown
-        ) :: l
-      case (l: List[KoreanToken], token: KoreanToken) => token :: l
-    }.reverse
-
-    def validNounHeading(token: KoreanToken): Boolean = {
-      val heading = token.text.take(token.text.length - 2)
-
-      val validLength = token.text.length > 2
-      val validPos = token.pos == Verb
-      val validEndings = EndingsForNouns.contains(token.text.takeRight(2))
-      val validNouns = koreanDictionary(Noun).contains(heading)
-
-      validLength && validPos && validEndings && validNouns
+        )
+        if (validNounHeading(stemmed)) {
+          // Later endings extend the trailing predicate token, so splitting now is safe.
+          val heading = stemmed.text.take(stemmed.text.length - 2)
+          val ending = stemmed.text.takeRight(2)
+          output += KoreanToken(heading, Noun, stemmed.offset, heading.length)
+          output += KoreanToken(ending, stemmed.pos, stemmed.offset + heading.length,
+            stemmed.length - heading.length)
+        } else {
+          output += stemmed
+        }
+      } else {
+        output += token
+      }
     }
 
-    stemmed.flatMap {
-      case token if validNounHeading(token) =>
-        val heading = token.text.take(token.text.length - 2)
-        val ending = token.text.takeRight(2)
+    def addAll(tokens: Seq[KoreanToken]): Unit = tokens.foreach(add)
 
-        Seq(
-          KoreanToken(heading, Noun, token.offset, heading.length),
-          KoreanToken(ending, token.pos, token.offset + heading.length, token.length - heading.length)
-        )
-      case token => Seq(token)
+    def result: Seq[KoreanToken] = {
+      if (!hasPredicate || orphanEndings.isEmpty) {
+        output.toList
+      } else {
+        val orphans = orphanEndings.toSet
+        output.iterator.zipWithIndex.collect {
+          case (token, i) if !orphans.contains(i) => token
+        }.toList
+      }
     }
   }
 }
@@ -0,0 +1,141 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.penguin.korean.tokenizer
+
+import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Tokens of an edited text, as returned by KoreanTokenizer.retokenize: slices of earlier token
+ * sequences, each with the shift of its offsets. An edit replaces the slices it touches and
+ * shifts the following ones, so it neither copies nor rebuilds the tokens it leaves alone.
+ * Tokens are shifted as they are read.
+ *
+ * Small neighboring slices are merged, so typing in one place keeps a few slices, and the
+ * number of slices grows with the number of places edited.
+ */
+final class EditedTokens private(pieces: Array[EditedTokens.Piece]) extends IndexedSeq[KoreanToken] {
+  import EditedTokens._
+
+  // Token count up to the end of each piece
+  private[this] val ends: Array[Int] = pieces.scanLeft(0)(_ + _.size).tail
+
+  override def length: Int = if (ends.isEmpty) 0 else ends(ends.length - 1)
+
+  private[this] def pieceOf(index: Int): Int = {
+    var lo = 0
+    var hi = ends.length - 1
+    while (lo < hi) {
+      val mid = (lo + hi) >>> 1
+      if (ends(mid) <= index) lo = mid + 1 else hi = mid
+    }
+    lo
+  }
+
+  override def apply(index: Int): KoreanToken = {
+    if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index.toString)
+    val p = pieceOf(index)
+    pieces(p)(index - (ends(p) - pieces(p).size))
+  }
+
+  override def iterator: Iterator[KoreanToken] = pieces.iterator.flatMap(_.iterator)
+
+  protected[korean] def slices: Int = pieces.length
+
+  /**
+   * Index of the first token at or after offset, or length when there is none.
+   */
+  def indexAtOffset(offset: Int): Int = {
+    var lo = 0
+    var hi = length
+    while (lo < hi) {
+      val mid = (lo + hi) >>> 1
+      if (apply(mid).offset < offset) lo = mid + 1 else hi = mid
+    }
+    lo
+  }
+
+  /**
+   * Replace the tokens in [from, until) with inserted and shift the offsets of the tokens
+   * after them by delta.
+   */
+  def splice(from: Int, until: Int, inserted: IndexedSeq[KoreanToken], delta: Int): EditedTokens = {
+    val out = new ArrayBuffer[Piece](pieces.length + 2)
+    var start = 0
+    pieces.foreach { piece =>
+      val end = start + piece.size
+      if (start < from) out += piece.slice(0, math.min(end, from) - start, 0)
+      start = end
+    }
+    var at = out.size
+    out += Piece(inserted, 0, inserted.size, 0)
+    start = 0
+    pieces.foreach { piece =>
+      val end = start + piece.size
+      if (end > until) out += piece.slice(math.max(until - start, 0), piece.size, delta)
+      start = end
+    }
+
+    // Merge the small pieces around the edit.
+    while (at > 0 && out(at - 1).size + out(at).size <= SmallPiece) {
+      out(at - 1) = out(at - 1).merge(out(at))
+      out.remove(at)
+      at -= 1
+    }
+    while (at + 1 < out.size && out(at).size + out(at + 1).size <= SmallPiece) {
+      out(at) = out(at).merge(out(at + 1))
+      out.remove(at + 1)
+    }
+    new EditedTokens(out.filter(_.size > 0).toArray)
+  }
+}
+
+object EditedTokens {
+  private val SmallPiece = 64
+
+  /**
+   * Tokens base(from until until), with offsets shifted by delta.
+   */
+  private case class Piece(base: IndexedSeq[KoreanToken], from: Int, until: Int, delta: Int) {
+    def size: Int = until - from
+
+    def apply(i: Int): KoreanToken = shift(base(from + i), delta)
+
+    def iterator: Iterator[KoreanToken] = base.iterator.slice(from, until).map(shift(_, delta))
+
+    def slice(start: Int, end: Int, extraDelta: Int): Piece =
+      Piece(base, from + start, from + end, delta + extraDelta)
+
+    def merge(next: Piece): Piece = {
+      val merged = (iterator ++ next.iterator).toVector
+      Piece(merged, 0, merged.size, 0)
+    }
+  }
+
+  private def shift(token: KoreanToken, delta: Int): KoreanToken =
+    if (delta == 0) token else token.copy(offset = token.offset + delta)
+
+  /**
+   * Wraps tokens without copying them; EditedTokens are returned as is.
+   */
+  def apply(tokens: IndexedSeq[KoreanToken]): EditedTokens = tokens match {
+    case edited: EditedTokens => edited
+    case _ => new EditedTokens(if (tokens.isEmpty) Array() else Array(Piece(tokens, 0, tokens.size, 0)))
+  }
+}
@@ -21,45 +21,79 @@ package com.twitter.penguin.korean.tokenizer
 import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken
 import com.twitter.penguin.korean.util.KoreanPos
 
+import scala.collection.immutable.BitSet
+
 /**
   * Detokenizes a list of tokenized words into a readable sentence.
   */
 object KoreanDetokenizer {
-  val SuffixPos = Set(KoreanPos.Josa, KoreanPos.Eomi, KoreanPos.PreEomi, KoreanPos.Suffix,
+  val SuffixPos = KoreanPos.KoreanPosSet(KoreanPos.Josa, KoreanPos.Eomi, KoreanPos.PreEomi, KoreanPos.Suffix,
     KoreanPos.Punctuation)
-  val PrefixPos = Set(KoreanPos.NounPrefix, KoreanPos.VerbPrefix)
+  val PrefixPos = KoreanPos.KoreanPosSet(KoreanPos.NounPrefix, KoreanPos.VerbPrefix)
+
+  /**
+    * Buffers reused across the inputs of detokenizeAll.
+    */
+  private class Buffers {
+    val text = new StringBuilder
+    val output = new StringBuilder
+  }
+
+  def detokenize(input: Iterable[String]): String = detokenize(input, new Buffers)
 
-  def detokenize(input: Iterable[String]) = {
+  /**
+    * Detokenize many lists of words, reusing the internal buffers between them.
+    *
+    * @param inputs Lists of words.
+    * @return Detokenized strings in the input order.
+    */
+  def detokenizeAll(inputs: Iterable[Iterable[String]]): Seq[String] = {
+    val buffers = new Buffers
+    inputs.map(input => detokenize(input, buffers)).toList
+  }
+
+  private def detokenize(input: Iterable[String], buffers: Buffers): String = {
     // Space guide prevents tokenizing a word that was not tokenized in the input.
-    val spaceGuide: Set[Int] = getSpaceGuide(input)
+    val spaceGuide: BitSet = getSpaceGuide(input, buffers)
 
     // Tokenize a merged text with the space guide.
-    val tokenized = KoreanTokenizer.tokenize(input.mkString(""), TokenizerProfile(spaceGuide = spaceGuide))
+    val tokenized = KoreanTokenizer.tokenize(buffers.text, TokenizerProfile(spaceGuide = spaceGuide))
 
     // Attach suffixes and prefixes.
-    collapseTokens(tokenized).mkString(" ")
+    collapseTokens(tokenized, buffers.output)
   }
 
-  private def collapseTokens(tokenized: Seq[KoreanToken]): List[String] = {
-    val (output, isPrefix) = tokenized.foldLeft((List[String](), false)) {
-      case ((output: List[String], isPrefix: Boolean), token: KoreanToken) =>
-        if (output.nonEmpty && (isPrefix || SuffixPos.contains(token.pos))) {
-          val attached = output.lastOption.getOrElse("") + token.text
-          (output.init :+ attached, false)
-        } else if (PrefixPos.contains(token.pos)) {
-          (output :+ token.text, true)
-        } else {
-          (output :+ token.text, false)
-        }
+  private def collapseTokens(tokenized: Seq[KoreanToken], output: StringBuilder): String = {
+    output.clear()
+    var isPrefix = false
+    tokenized.foreach { token =>
+      if (output.nonEmpty && (isPrefix || SuffixPos.contains(token.pos))) {
+        output.append(token.text)
+        isPrefix = false
+      } else {
+        if (output.nonEmpty) output.append(' ')
+        output.append(token.text)
+        isPrefix = PrefixPos.contains(token.pos)
+      }
     }
-    output
+    output.toString
   }
 
-  private def getSpaceGuide(input: Iterable[String]): Set[Int] = {
-    val (spaceGuide, index) = input.foldLeft((Set[Int](), 0)) {
-      case ((output: Set[Int], i: Int), word: String) =>
-        (output + (i + word.length), i + word.length)
+  /**
+    * Builds the merged text in buffers.text and returns the end offsets of the words
+    * as a BitSet. The BitSet wraps a fresh bit mask, because it ends up in a TokenizerProfile.
+    */
+  private def getSpaceGuide(input: Iterable[String], buffers: Buffers): BitSet = {
+    val text = buffers.text
+    text.clear()
+    input.foreach(text.append)
+
+    val guide = new Array[Long]((text.length >> 6) + 1)
+    var i = 0
+    input.foreach { word =>
+      i += word.length
+      guide(i >> 6) |= 1L << i
     }
-    spaceGuide
+    BitSet.fromBitMaskNoCopy(guide)
   }
 }
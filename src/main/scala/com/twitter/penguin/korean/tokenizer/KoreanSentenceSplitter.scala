@@ -18,29 +18,155 @@
 
 package com.twitter.penguin.korean.tokenizer
 
+import java.io.Reader
+
 case class Sentence(text: String, start: Int, end: Int) {
   override def toString: String = s"$text($start,$end)"
 }
 
+/**
+ * Sentence boundary as character offsets into the input: [start, end)
+ */
+case class SentenceSpan(start: Int, end: Int)
+
 /**
  * Sentence Splitter
+ *
+ * A sentence starts at a character that is neither punctuation (.!?…) nor whitespace and
+ * ends at the first punctuation followed by whitespace or the end of input, optionally
+ * through one closing quote. Punctuation inside a sentence (iphone6.0, 그래...ㅋㅋ) does not
+ * end it.
+ *
+ * The input is scanned once without backtracking, looking at most three characters ahead,
+ * so splitting runs in linear time and constant memory.
  */
 object KoreanSentenceSplitter {
-  private val re =
-    """(?x)[^.!?…\s]   # First char is non-punct, non-ws
-      [^.!?…]*         # Greedily consume up to punctuation.
-      (?:              # Group for unrolling the loop.
-        [.!?…]         # (special) inner punctuation ok if
-        (?!['\"]?\s|$) # not followed by ws or EOS.
-        [^.!?…]*       # Greedily consume up to punctuation.
-      )*               # Zero or more (special normal*)
-      [.!?…]?          # Optional ending punctuation.
-      ['\"]?           # Optional closing quote.
-      (?=\s|$)""".r
-
-  def split(s: CharSequence) = {
-    re.findAllMatchIn(s)
-      .map(m => Sentence(m.group(0), m.start(0), m.end(0)))
-      .toSeq
+  private val EOF = -1
+
+  /**
+   * Character source with a bounded lookahead.
+   */
+  private abstract class CharSource {
+    /**
+     * @param i absolute offset, never less than (last requested offset - 3)
+     * @return the character at i or EOF
+     */
+    def apply(i: Int): Int
+  }
+
+  private class CharSequenceSource(s: CharSequence) extends CharSource {
+    override def apply(i: Int): Int = if (i < s.length) s.charAt(i) else EOF
+  }
+
+  private class ReaderSource(reader: Reader) extends CharSource {
+    private[this] val BufferSize = 8
+    private[this] val Mask = BufferSize - 1
+    private[this] val ring = new Array[Int](BufferSize)
+    private[this] var read = 0
+    private[this] var eof = false
+
+    override def apply(i: Int): Int = {
+      while (read <= i && !eof) {
+        val c = reader.read()
+        if (c == EOF) eof = true else {
+          ring(read & Mask) = c
+          read += 1
+        }
+      }
+      if (i < read) ring(i & Mask) else EOF
+    }
+  }
+
+  private def isPunctuation(c: Int): Boolean = c == '.' || c == '!' || c == '?' || c == '…'
+
+  private def isQuote(c: Int): Boolean = c == '\'' || c == '"'
+
+  // Matches java.util.regex \s
+  private def isSpace(c: Int): Boolean =
+    c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r'
+
+  private def isLineTerminator(c: Int): Boolean =
+    c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029'
+
+  // End of input, or only a final line terminator left (java.util.regex '$')
+  private def isEnd(in: CharSource, i: Int): Boolean = {
+    val c = in(i)
+    c == EOF ||
+        (isLineTerminator(c) && (in(i + 1) == EOF || (c == '\r' && in(i + 1) == '\n' && in(i + 2) == EOF)))
+  }
+
+  private def isBoundary(in: CharSource, i: Int): Boolean = isSpace(in(i)) || isEnd(in, i)
+
+  // Punctuation at i ends a sentence if followed by whitespace or the end, or a quote and whitespace.
+  private def isTerminal(in: CharSource, i: Int): Boolean =
+    isBoundary(in, i + 1) || (isQuote(in(i + 1)) && isSpace(in(i + 2)))
+
+  private class SpanIterator(in: CharSource) extends Iterator[SentenceSpan] {
+    private[this] var pos = 0
+    private[this] var nextSpan: SentenceSpan = null
+
+    private[this] def advance(): SentenceSpan = {
+      var c = in(pos)
+      while (c != EOF && (isPunctuation(c) || isSpace(c))) {
+        pos += 1
+        c = in(pos)
+      }
+      if (c == EOF) return null
+
+      val start = pos
+      var i = pos + 1
+      c = in(i)
+      while (c != EOF && !(isPunctuation(c) && isTerminal(in, i))) {
+        i += 1
+        c = in(i)
+      }
+
+      val end = if (c == EOF) {
+        i
+      } else if (isQuote(in(i + 1)) && isBoundary(in, i + 2)) {
+        i + 2
+      } else {
+        i + 1
+      }
+      pos = end
+      SentenceSpan(start, end)
+    }
+
+    override def hasNext: Boolean = {
+      if (nextSpan == null) nextSpan = advance()
+      nextSpan != null
+    }
+
+    override def next(): SentenceSpan = {
+      if (!hasNext) throw new NoSuchElementException("No more sentences")
+      val span = nextSpan
+      nextSpan = null
+      span
+    }
+  }
+
+  /**
+   * Lazily find sentence spans without copying the input.
+   *
+   * @param s input text
+   * @return Iterator of SentenceSpans
+   */
+  def splitSpans(s: CharSequence): Iterator[SentenceSpan] =
+    new SpanIterator(new CharSequenceSource(s))
+
+  /**
+   * Lazily find sentence spans in a character stream. Offsets are relative to the first
+   * character read. The reader is not closed.
+   *
+   * @param reader input stream
+   * @return Iterator of SentenceSpans
+   */
+  def splitSpans(reader: Reader): Iterator[SentenceSpan] =
+    new SpanIterator(new ReaderSource(reader))
+
+  def split(s: CharSequence): Seq[Sentence] = {
+    splitSpans(s)
+      .map(span => Sentence(s.subSequence(span.start, span.end).toString, span.start, span.end))
+      .toList
   }
 }
@@ -18,12 +18,16 @@
 
 package com.twitter.penguin.korean.tokenizer
 
+import com.twitter.penguin.korean.stemmer.KoreanStemmer
 import com.twitter.penguin.korean.tokenizer.KoreanChunker._
 import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
 import com.twitter.penguin.korean.util.KoreanPos
 import com.twitter.penguin.korean.util.KoreanPos._
 import com.twitter.penguin.korean.util.KoreanSubstantive._
 
+import java.util.concurrent.atomic.LongAdder
+import java.util.concurrent.{Callable, ForkJoinPool}
+
 import scala.collection.JavaConversions._
 import scala.collection.mutable
 
@@ -83,6 +87,19 @@ object KoreanTokenizer {
   )
   private val koreanPosTrie = KoreanPos.getTrie(SequenceDefinition)
 
+  /**
+    * Chunk text and pass each chunk to f, reporting the text when parsing a chunk fails.
+    */
+  private[this] def foreachChunk(text: CharSequence)(f: KoreanToken => Unit): Unit = {
+    try {
+      chunk(text).foreach(f)
+    } catch {
+      case e: Exception =>
+        System.err.println(s"Error tokenizing a chunk: $text")
+        throw e
+    }
+  }
+
   /**
     * Parse Korean text into a sequence of KoreanTokens with custom parameters
     *
@@ -92,40 +109,460 @@ object KoreanTokenizer {
   def tokenize(text: CharSequence,
       profile: TokenizerProfile = TokenizerProfile.defaultProfile
   ): Seq[KoreanToken] = {
-    try {
-      chunk(text).flatMap {
+    val tokens = Seq.newBuilder[KoreanToken]
+    foreachChunk(text) {
+      case token: KoreanToken if token.pos == Korean =>
+        // Get the best parse of each chunk
+        val parsed = parseKoreanChunk(token, profile)
+
+        // Collapse sequence of one-char nouns into one unknown noun: (가Noun 회Noun -> 가회Noun*)
+        tokens ++= collapseNouns(parsed)
+      case token: KoreanToken => tokens += token
+    }
+    tokens.result()
+  }
+
+  /**
+    * Parse Korean text into a sequence of KoreanTokens, recording the lattice of each Korean
+    * chunk into trace (see TokenizerTrace).
+    *
+    * @param text Input Korean chunk
+    * @param trace TokenizerTrace collecting the lattices
+    * @return sequence of KoreanTokens
+    */
+  def tokenize(text: CharSequence, profile: TokenizerProfile, trace: TokenizerTrace): Seq[KoreanToken] = {
+    val tokens = Seq.newBuilder[KoreanToken]
+    foreachChunk(text) {
+      case token: KoreanToken if token.pos == Korean =>
+        tokens ++= collapseNouns(parseKoreanChunk(token, profile, trace))
+      case token: KoreanToken => tokens += token
+    }
+    tokens.result()
+  }
+
+  /**
+    * Parse Korean text into a sequence of KoreanTokens, optionally stemming predicates
+    * (see KoreanStemmer). The tokens of each chunk are stemmed right after the chunk is parsed,
+    * so the unstemmed tokens of the whole text are never collected; the stemming itself does
+    * the same dictionary lookups as KoreanStemmer.stem.
+    *
+    * @param text Input Korean chunk
+    * @param stem true to emit stemmed tokens, same as KoreanStemmer.stem(tokenize(text))
+    * @return sequence of KoreanTokens
+    */
+  def tokenize(text: CharSequence, profile: TokenizerProfile, stem: Boolean): Seq[KoreanToken] = {
+    if (!stem) return tokenize(text, profile)
+
+    val builder = new KoreanStemmer.StemBuilder
+    foreachChunk(text) {
+      case token: KoreanToken if token.pos == Korean =>
+        builder.addAll(collapseNouns(parseKoreanChunk(token, profile)))
+      case token: KoreanToken => builder.add(token)
+    }
+    builder.result
+  }
+
+  private[this] val segmentBoundary = """\s+""".r.pattern
+
+  /**
+    * Split text into segments of at least segmentLength chars, each ending after a whitespace
+    * run. The chunker splits text at whitespace runs first, so every segment chunks and
+    * parses exactly as it does in the whole text. Sentence ends are always followed by
+    * whitespace and therefore are such boundaries too.
+    *
+    * @return [start, end) of each segment, covering the text
+    */
+  protected[korean] def segments(text: CharSequence, segmentLength: Int): Seq[(Int, Int)] = {
+    val boundaries = mutable.ArrayBuffer(0)
+    val m = segmentBoundary.matcher(text)
+    var target = segmentLength
+    while (target < text.length && m.find(target) && m.end < text.length) {
+      boundaries += m.end
+      target = m.end + segmentLength
+    }
+    boundaries += text.length
+    boundaries.sliding(2).map { case Seq(start, end) => (start, end) }.toSeq
+  }
+
+  /**
+    * Parse Korean text into a sequence of KoreanTokens like tokenize(text, profile), parsing
+    * segments of a large text in parallel. The text is split at whitespace into segments of
+    * about segmentLength chars, which are tokenized as tasks on pool, and the tokens are
+    * shifted back to offsets in the text. The output is identical to tokenize(text, profile).
+    * Profiles with a spaceGuide, whose offsets are absolute, are tokenized in full.
+    *
+    * @param text Input text
+    * @param segmentLength Texts shorter than this are tokenized on the calling thread
+    * @param pool ForkJoinPool tokenizing the segments
+    * @return sequence of KoreanTokens
+    */
+  def tokenizeParallel(text: CharSequence,
+      profile: TokenizerProfile = TokenizerProfile.defaultProfile,
+      segmentLength: Int = 8192,
+      pool: ForkJoinPool = ForkJoinPool.commonPool()): Seq[KoreanToken] = {
+    require(segmentLength > 0, "segmentLength must be positive")
+    if (profile.spaceGuide.nonEmpty) return tokenize(text, profile)
+    val ranges = segments(text, segmentLength)
+    if (ranges.size <= 1) return tokenize(text, profile)
+
+    val tasks = ranges.map { case (start, end) =>
+      pool.submit(new Callable[Seq[KoreanToken]] {
+        override def call(): Seq[KoreanToken] = tokenize(text.subSequence(start, end), profile).map {
+          token => token.copy(offset = token.offset + start)
+        }
+      })
+    }
+    tasks.flatMap(_.join())
+  }
+
+  // The whitespace of the chunker's \s+ runs
+  private[this] def isSpace(c: Char): Boolean =
+    c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r'
+
+  /**
+    * Update the tokens of a text after an edit, re-chunking and re-parsing only the
+    * whitespace-separated words the edit touches. The chunker splits text at whitespace runs
+    * first and chunks are parsed independently, so the tokens before the first and after the
+    * last touched word are kept, shifted by the change in length. The output is identical to
+    * tokenize(text, profile). Profiles with a spaceGuide, whose offsets are absolute, are
+    * tokenized in full.
+    *
+    * The kept tokens are not copied: the result is EditedTokens, which splices the new tokens
+    * into the previous ones and shifts offsets as tokens are read. Besides parsing the touched
+    * words, an edit costs a binary search over the previous tokens and a step per slice of
+    * EditedTokens. Pass the previous result back in to keep it that way.
+    *
+    * @param text Text after the edit
+    * @param previous tokenize(textBeforeEdit, profile).toIndexedSeq or the previous retokenize
+    * @param edit TextEdit applied to the text
+    * @return sequence of KoreanTokens
+    */
+  def retokenize(text: CharSequence,
+      previous: IndexedSeq[KoreanToken],
+      edit: TextEdit,
+      profile: TokenizerProfile = TokenizerProfile.defaultProfile): EditedTokens = {
+    val tokens = EditedTokens(previous)
+    val delta = edit.inserted.length - edit.removed
+    val previousLength = if (tokens.isEmpty) 0 else {
+      val last = tokens(tokens.length - 1)
+      last.offset + last.length
+    }
+    require(edit.offset >= 0 && edit.removed >= 0 && edit.offset + edit.removed <= previousLength,
+      s"Edit $edit is out of the previous text of length $previousLength")
+    require(text.length == previousLength + delta,
+      s"Text of length ${text.length} does not match the previous tokens after $edit")
+    if (profile.spaceGuide.nonEmpty) return EditedTokens(tokenize(text, profile).toIndexedSeq)
+
+    // Widen [start, end) to word boundaries that are unchanged by the edit: the start follows
+    // a non-space char and begins a space run, the end closes a space run before a non-space.
+    var start = edit.offset
+    while (start > 0 && !isSpace(text.charAt(start - 1))) start -= 1
+    while (start > 0 && isSpace(text.charAt(start - 1))) start -= 1
+    var end = edit.offset + edit.inserted.length
+    while (end < text.length && !isSpace(text.charAt(end))) end += 1
+    while (end < text.length && isSpace(text.charAt(end))) end += 1
+    val previousEnd = end - delta
+
+    val edited = tokenize(text.subSequence(start, end), profile).map {
+      token => token.copy(offset = token.offset + start)
+    }.toVector
+    tokens.splice(tokens.indexAtOffset(start), tokens.indexAtOffset(previousEnd), edited, delta)
+  }
+
+  /**
+    * Parse Korean text into a sequence of KoreanTokens under each of several profiles, building
+    * the lattice of each Korean chunk once. Candidates are built once and scored under every
+    * profile, and each profile keeps its own beam, so the tokens under each profile are
+    * identical to tokenize(text, profile).
+    *
+    * Profiles share a lattice when they agree on unknownNounGate, which decides the candidates.
+    * Greedy profiles and profiles sharing a lattice with no other profile are tokenized
+    * separately and reported in MultiProfileTokens.separateRuns.
+    *
+    * @param text Input text
+    * @param profiles TokenizerProfiles to evaluate
+    * @return tokens per profile, in the order of profiles
+    */
+  def tokenizeWithProfiles(text: CharSequence, profiles: Seq[TokenizerProfile]): MultiProfileTokens = {
+    require(profiles.nonEmpty, "No profiles given")
+    val tokens = new Array[Seq[KoreanToken]](profiles.size)
+    val (lattice, greedy) = profiles.indices.partition(i => !profiles(i).greedy)
+    val (shared, single) = lattice.groupBy(i => profiles(i).unknownNounGate).values.partition(_.size > 1)
+    val separateRuns = (greedy ++ single.flatten).sorted
+    separateRuns.foreach(i => tokens(i) = tokenize(text, profiles(i)))
+
+    if (shared.nonEmpty) {
+      val groups = shared.toSeq.map(group => (group, group.map(profiles)))
+      val builders = groups.map { case (group, _) => group.map(_ => Seq.newBuilder[KoreanToken]) }
+      foreachChunk(text) {
         case token: KoreanToken if token.pos == Korean =>
-          // Get the best parse of each chunk
-          val parsed = parseKoreanChunk(token, profile)
+          groups.zip(builders).foreach { case ((_, groupProfiles), groupBuilders) =>
+            parseKoreanChunk(token, groupProfiles).zip(groupBuilders).foreach {
+              case (parsed, builder) => builder ++= collapseNouns(parsed)
+            }
+          }
+        case token: KoreanToken => builders.foreach(_.foreach(_ += token))
+      }
+      groups.zip(builders).foreach { case ((group, _), groupBuilders) =>
+        group.zip(groupBuilders).foreach { case (i, builder) => tokens(i) = builder.result() }
+      }
+    }
+    MultiProfileTokens(tokens.toSeq, separateRuns)
+  }
+
+  private[this] val directMatchChunks = new LongAdder
+  private[this] val fastPathChunks = new LongAdder
+  private[this] val latticeChunks = new LongAdder
+  private[this] val latticeCandidates = new LongAdder
+  private[this] val greedyChunks = new LongAdder
+
+  /**
+    * Number of Korean chunks parsed by a direct dictionary match, by the dictionary fast path,
+    * by the full lattice and by greedy matching, and number of lattice candidates built, since
+    * the last reset.
+    * TokenizerProfile.scoreBoundPruning lowers the number of candidates built.
+    */
+  def chunkPathCounts: Map[String, Long] = Map(
+    "directMatch" -> directMatchChunks.sum,
+    "fastPath" -> fastPathChunks.sum,
+    "lattice" -> latticeChunks.sum,
+    "latticeCandidates" -> latticeCandidates.sum,
+    "greedy" -> greedyChunks.sum
+  )
+
+  def resetChunkPathCounts(): Unit = {
+    directMatchChunks.reset()
+    fastPathChunks.reset()
+    latticeChunks.reset()
+    latticeCandidates.reset()
+    greedyChunks.reset()
+  }
+
+  private[this] def nextTries(trie: KoreanPosTrie): List[KoreanPosTrie] = trie.nextTrie.map {
+    case nt: KoreanPosTrie if nt == selfNode => trie
+    case nt: KoreanPosTrie => nt
+  }
+
+  /**
+    * The token for chunk[start, end) as pos. Nouns missing from the dictionary become
+    * unknown proper nouns unless they are names or numbers.
+    */
+  private[this] def candidateToken(chunk: KoreanToken, features: ChunkFeatures, pos: KoreanPos,
+      start: Int, end: Int, word: String): KoreanToken = {
+    if (pos == Noun && !koreanDictionary(Noun).contains(word.toCharArray)) {
+      val isWordName: Boolean = features.isName(start, end)
+      val isWordKoreanNameVariation: Boolean = features.isKoreanNameVariation(start, end)
+
+      val unknown = !isWordName && !features.isKoreanNumber(start, end) && !isWordKoreanNameVariation
+      val tokenPos = if (unknown || isWordName || isWordKoreanNameVariation) ProperNoun else Noun
+      KoreanToken(word, tokenPos, chunk.offset + start, word.length, unknown)
+    } else {
+      val tokenPos = if (pos == Noun && properNouns.contains(word.toCharArray)) ProperNoun else pos
+      KoreanToken(word, tokenPos, chunk.offset + start, word.length)
+    }
+  }
+
+  /**
+    * With TokenizerProfile.unknownNounGate, a Noun candidate must be a single character, a
+    * dictionary noun, a name or number, or a plausible unknown noun. Single characters keep
+    * every chunk parseable.
+    */
+  private[this] def isNounCandidate(features: ChunkFeatures, start: Int, end: Int, word: String): Boolean =
+    end - start == 1 || koreanDictionary(Noun).contains(word) || features.isPlausibleUnknownNoun(start, end) ||
+        features.isName(start, end) || features.isKoreanNumber(start, end) ||
+        features.isKoreanNameVariation(start, end)
+
+  // POS that may follow a partial parse, and the number of words each adds
+  private[this] def possiblePoses(solution: CandidateParse): Seq[PossibleTrie] = if (solution.ending.isDefined) {
+    solution.curTrie.map(t => PossibleTrie(t, 0)) ++ koreanPosTrie.map(t => PossibleTrie(t, 1))
+  } else {
+    solution.curTrie.map(t => PossibleTrie(t, 0))
+  }
 
-          // Collapse sequence of one-char nouns into one unknown noun: (가Noun 회Noun -> 가회Noun*)
-          collapseNouns(parsed)
-        case token: KoreanToken => Seq(token)
+  private[this] val nounTrie = koreanPosTrie.find(_.curPos == Noun).get
+
+  // Greedy parse: the POS taken when a word matches several, content words and endings first
+  private[this] val greedyPosRank: Map[KoreanPos, Int] = Seq(Noun, Josa, Eomi, Verb, Adjective, PreEomi,
+    Adverb, Determiner, Conjunction, Exclamation, Suffix, NounPrefix, VerbPrefix).zipWithIndex.toMap
+  private[this] val greedyNewWord = koreanPosTrie.sortBy(t => greedyPosRank(t.curPos))
+
+  // nextTries of every trie node in greedyPosRank order, keyed by node identity
+  private[this] val greedyNextTries: java.util.IdentityHashMap[KoreanPosTrie, List[KoreanPosTrie]] = {
+    val map = new java.util.IdentityHashMap[KoreanPosTrie, List[KoreanPosTrie]]
+    def visit(trie: KoreanPosTrie): Unit = if (!map.containsKey(trie)) {
+      val next = nextTries(trie).sortBy(t => greedyPosRank(t.curPos))
+      map.put(trie, next)
+      next.foreach(visit)
+    }
+    koreanPosTrie.foreach(visit)
+    map
+  }
+
+  /**
+    * Greedy parse: from the start of the chunk, the longest dictionary word of a POS the
+    * sequence grammar allows next, continuing the current word before starting a new one. A
+    * word of several POS takes the first in greedyPosRank.
+    * Known nouns include names and numbers. A char that starts no such word becomes a
+    * one-char unknown noun, and collapseNouns joins runs of them. There is no scoring and one
+    * parse is kept, so the cost is linear in the chunk length.
+    */
+  private[this] def parseGreedyChunk(chunk: KoreanToken, features: ChunkFeatures): Seq[KoreanToken] = {
+    val tokens = mutable.ArrayBuffer[KoreanToken]()
+    var curTrie: List[KoreanPosTrie] = greedyNewWord
+    var ending: Option[KoreanPos] = None
+    var start = 0
+    while (start < chunk.length) {
+      val poses = if (ending.isDefined) curTrie ++ greedyNewWord else curTrie
+      var end = math.min(chunk.length, start + MAX_TRACE_BACK)
+      var matched: KoreanPosTrie = null
+      while (matched == null && end > start) {
+        val word = chunk.text.substring(start, end)
+        matched = poses.find { t =>
+          if (t.curPos == Noun) {
+            koreanDictionary(Noun).contains(word) || features.isName(start, end) ||
+                features.isKoreanNumber(start, end) || features.isKoreanNameVariation(start, end)
+          } else {
+            koreanDictionary(t.curPos).contains(word)
+          }
+        }.orNull
+        if (matched == null) end -= 1
       }
-    } catch {
-      case e: Exception =>
-        System.err.println(s"Error tokenizing a chunk: $text")
-        throw e
+
+      if (matched == null) {
+        end = start + 1
+        matched = poses.find(_.curPos == Noun).getOrElse(nounTrie)
+        tokens += KoreanToken(chunk.text.substring(start, end), Noun, chunk.offset + start, 1, unknown = true)
+      } else {
+        tokens += candidateToken(chunk, features, matched.curPos, start, end, chunk.text.substring(start, end))
+      }
+      curTrie = greedyNextTries.get(matched)
+      ending = matched.ending
+      start = end
     }
+    tokens
   }
 
   /**
-    * Find the best parse using dynamic programming.
+    * Dictionary fast path: the best parse of the chunk as two known tokens of one word, such as
+    * Noun + Josa or Verb + Eomi, if it is provably what parseKoreanChunk's lattice returns.
     *
-    * @param chunk Input chunk. The input has to be entirely. Check for input validity is skipped
-    *              for performance optimization. This method is private and is called only by tokenize.
-    * @return The best possible parse.
+    * Every such parse is scored exactly as in the lattice and ordered as the lattice orders ties.
+    * The best is returned only if it scores below ParsedChunk.minScore of every other shape
+    * (one unknown token, two words, unknown tokens, three or more tokens) and its first token
+    * survives the lattice's beam at its end position.
+    *
+    * @return the parse, or null to fall back to the lattice
     */
-  private[this] def parseKoreanChunk(chunk: KoreanToken,
-      profile: TokenizerProfile = TokenizerProfile.defaultProfile): Seq[KoreanToken] = {
-    // Direct match
-    // This may produce 하 -> PreEomi
+  private[this] def parseDictionaryChunk(chunk: KoreanToken, profile: TokenizerProfile,
+      features: ChunkFeatures): Seq[KoreanToken] = {
+    val length = chunk.length
+    if (length < 2 || length > 2 * MAX_TRACE_BACK || !ParsedChunk.hasScoreBounds(profile)) return null
+
+    val otherShapes = Seq(
+      ParsedChunk.minScore(profile, 2, 2, 0, length),
+      ParsedChunk.minScore(profile, 2, 1, 1, length),
+      ParsedChunk.minScore(profile, 3, 1, 0, length)
+    )
+    val bound = if (length > MAX_TRACE_BACK) {
+      otherShapes.min
+    } else if (features.isName(0, length) || features.isKoreanNumber(0, length) ||
+        features.isKoreanNameVariation(0, length)) {
+      // The whole chunk is a known single-token noun, which the bounds do not cover.
+      return null
+    } else {
+      math.min(otherShapes.min, ParsedChunk.minScore(profile, 1, 1, length, length))
+    }
+
+    var best: ParsedChunk = null
+    var bestKey: (Float, Int, Int, Int, Int) = null
+    for (i <- math.max(1, length - MAX_TRACE_BACK) to math.min(MAX_TRACE_BACK, length - 1)) {
+      val head = chunk.text.substring(0, i)
+      val tail = chunk.text.substring(i)
+
+      // Single-token parses of chunk[0, i) in the order the lattice's beam keeps them
+      val prefixes = koreanPosTrie.filter { t =>
+        t.curPos == Noun || koreanDictionary(t.curPos).contains(head)
+      }.map { t =>
+        (t, ParsedChunk(Seq(candidateToken(chunk, features, t.curPos, 0, i, head)), 1, profile))
+      }.sortBy { case (_, prefix) => (prefix.score, prefix.posTieBreaker) }
+      val multiTokenPrefixBound = math.min(ParsedChunk.minScore(profile, 2, 1, 0, i),
+        ParsedChunk.minScore(profile, 3, 1, 0, i))
+
+      prefixes.zipWithIndex.foreach { case ((trie, prefix), rank) =>
+        val parses = nextTries(trie).filter { t =>
+          t.curPos == Noun || koreanDictionary(t.curPos).contains(tail)
+        }.map { t =>
+          prefix ++ ParsedChunk(Seq(candidateToken(chunk, features, t.curPos, i, length, tail)), 0, profile)
+        }.zipWithIndex.filter { case (parse, _) => !parse.posNodes.exists(_.unknown) }
+
+        if (parses.nonEmpty) {
+          if (rank >= TOP_N_PER_STATE || prefix.score >= multiTokenPrefixBound) return null
+          parses.foreach { case (parse, j) =>
+            val key = (parse.score, parse.posTieBreaker, -i, rank, j)
+            if (best == null || Ordering[(Float, Int, Int, Int, Int)].lt(key, bestKey)) {
+              best = parse
+              bestKey = key
+            }
+          }
+        }
+      }
+    }
+
+    // Leave a margin for float rounding in the summed scores.
+    if (best != null && best.score < bound - 1e-4f) best.posNodes else null
+  }
+
+  /**
+    * The chunk as one token if it is in a dictionary, or null.
+    * This may produce 하 -> PreEomi
+    */
+  private[this] def directMatch(chunk: KoreanToken): Seq[KoreanToken] = {
     koreanDictionary.foreach {
       case (pos, dict) =>
         if (dict.contains(chunk.text)) {
+          directMatchChunks.increment()
           return Seq(KoreanToken(chunk.text, pos, chunk.offset, chunk.length))
         }
     }
+    null
+  }
+
+  /**
+    * Find the best parse using dynamic programming.
+    *
+    * @param chunk Input chunk. The input has to be entirely. Check for input validity is skipped
+    *              for performance optimization. This method is private and is called only by tokenize.
+    * @return The best possible parse.
+    */
+  private[this] def parseKoreanChunk(chunk: KoreanToken,
+      profile: TokenizerProfile = TokenizerProfile.defaultProfile,
+      trace: TokenizerTrace = TokenizerTrace.Disabled): Seq[KoreanToken] = {
+    if (trace.enabled) trace.startChunk(chunk)
+
+    val matched = directMatch(chunk)
+    if (matched != null) {
+      if (trace.enabled) trace.endChunk(Seq(), matched, directMatch = true)
+      return matched
+    }
+
+    val features = new ChunkFeatures(chunk.text, MAX_TRACE_BACK)
+
+    if (profile.greedy) {
+      greedyChunks.increment()
+      val parsed = parseGreedyChunk(chunk, features)
+      if (trace.enabled) trace.endChunk(Seq(), parsed, directMatch = false)
+      return parsed
+    }
+
+    if (profile.dictionaryFastPath && !trace.enabled) {
+      val parsed = parseDictionaryChunk(chunk, profile, features)
+      if (parsed != null) {
+        fastPathChunks.increment()
+        return parsed
+      }
+    }
+    latticeChunks.increment()
+    val pruning = profile.scoreBoundPruning && ParsedChunk.hasScoreBounds(profile)
 
     // Buffer for solutions
     val solutions: mutable.Map[Int, List[CandidateParse]] = new java.util.HashMap[Int, List[CandidateParse]]
@@ -139,68 +576,171 @@ object KoreanTokenizer {
     )
 
     // Find N best parses per state
-    for (
-      end <- 1 to chunk.length;
-      start <- end - 1 to(Seq(end - MAX_TRACE_BACK, 0).max, -1)
-    ) {
-      val word = chunk.text.slice(start, end)
-
-      val curSolutions = solutions(start)
-
-      val candidates = curSolutions.flatMap {
-        solution =>
-          val possiblePoses: Seq[PossibleTrie] = if (solution.ending.isDefined) {
-            solution.curTrie.map(t => PossibleTrie(t, 0)) ++ koreanPosTrie.map(
-              t => PossibleTrie(t, 1))
-          } else {
-            solution.curTrie.map(t => PossibleTrie(t, 0))
+    for (end <- 1 to chunk.length) {
+      val starts = end - 1 to(Seq(end - MAX_TRACE_BACK, 0).max, -1)
+
+      // Upper bound of the worst score kept in the beam of end. Tokens of a dictionary POS are
+      // scored exactly by extensionLowerBound, so the fifth best of those bounds the beam; any
+      // candidate whose lower bound is above it would be cut by take(TOP_N_PER_STATE) and is
+      // not built. The margin covers float rounding in the summed bounds.
+      val beamBound = if (pruning) {
+        val best = new BoundedScores(TOP_N_PER_STATE)
+        starts.foreach { start =>
+          val word = chunk.text.slice(start, end)
+          solutions(start).foreach { solution =>
+            if (solution.parse.extensionFloor <= best.max) {
+              possiblePoses(solution).foreach { t =>
+                if (t.curTrie.curPos != Noun && koreanDictionary(t.curTrie.curPos).contains(word)) {
+                  best.add(solution.parse.extensionLowerBound(t.curTrie.curPos, word, chunk.offset + start,
+                    t.words) + 1e-4f)
+                }
+              }
+            }
           }
+        }
+        best.max + 1e-4f
+      } else {
+        Float.PositiveInfinity
+      }
+
+      starts.foreach { start =>
+        val word = chunk.text.slice(start, end)
+
+        val curSolutions = solutions(start)
+        val currentSolutions = if (solutions.contains(end)) solutions(end) else List()
+        // The beam only improves as candidates are merged, so a full beam bounds it too.
+        val admissionBound = if (pruning && currentSolutions.size == TOP_N_PER_STATE) {
+          math.min(beamBound, currentSolutions.last.parse.score + 1e-4f)
+        } else {
+          beamBound
+        }
 
-          possiblePoses.view.filter { t =>
-            t.curTrie.curPos == Noun || koreanDictionary(t.curTrie.curPos).contains(
-              word.toCharArray)
-          }.map { case t: PossibleTrie =>
-            val candidateToAdd =
-              if (t.curTrie.curPos == Noun && !koreanDictionary(Noun).contains(word.toCharArray)) {
-                val isWordName: Boolean = isName(word)
-                val isWordKoreanNameVariation: Boolean = isKoreanNameVariation(word)
-
-                val unknown = !isWordName && !isKoreanNumber(word) && !isWordKoreanNameVariation
-                val pos = if (unknown || isWordName || isWordKoreanNameVariation) ProperNoun else Noun
-                ParsedChunk(Seq(KoreanToken(word, pos, chunk.offset + start, word.length, unknown)),
-                  t.words, profile)
+        val candidates = curSolutions.flatMap {
+          case solution if solution.parse.extensionFloor > admissionBound => Nil
+          case solution =>
+            possiblePoses(solution).view.filter { t =>
+              if (t.curTrie.curPos == Noun) {
+                !profile.unknownNounGate || isNounCandidate(features, start, end, word)
               } else {
-                val pos = if (t.curTrie.curPos == Noun && properNouns.contains(
-                  word.toCharArray)) ProperNoun
-                else t.curTrie.curPos
-                ParsedChunk(Seq(KoreanToken(word, pos, chunk.offset + start, word.length)), t.words,
-                  profile)
+                koreanDictionary(t.curTrie.curPos).contains(word.toCharArray)
               }
+            }.filter { t =>
+              admissionBound == Float.PositiveInfinity ||
+                  solution.parse.extensionLowerBound(t.curTrie.curPos, word, chunk.offset + start,
+                    t.words) <= admissionBound
+            }.map { case t: PossibleTrie =>
+              val candidateToAdd = ParsedChunk(
+                Seq(candidateToken(chunk, features, t.curTrie.curPos, start, end, word)), t.words, profile)
 
-            val nextTrie = t.curTrie.nextTrie.map {
-              case nt: KoreanPosTrie if nt == selfNode => t.curTrie
-              case nt: KoreanPosTrie => nt
+              CandidateParse(solution.parse ++ candidateToAdd, nextTries(t.curTrie), t.curTrie.ending)
             }
+        }
 
-            CandidateParse(solution.parse ++ candidateToAdd, nextTrie, t.curTrie.ending)
-          }
-      }
-
-      val currentSolutions = if (solutions.contains(end)) solutions(end) else List()
+        latticeCandidates.add(candidates.size)
+        if (trace.enabled) trace.addCandidates(start, end, candidates.map(_.parse))
 
-      solutions += end -> (currentSolutions ++ candidates).sortBy {
-        c => (c.parse.score, c.parse.posTieBreaker)
-      }.take(TOP_N_PER_STATE)
+        solutions += end -> (currentSolutions ++ candidates).sortBy {
+          c => (c.parse.score, c.parse.posTieBreaker)
+        }.take(TOP_N_PER_STATE)
+      }
     }
 
-
-    if (solutions(chunk.length).isEmpty) {
+    val result = if (solutions(chunk.length).isEmpty) {
       // If the chunk is not parseable, treat it as a unknown noun chunk.
       Seq(KoreanToken(chunk.text, Noun, 0, chunk.length, true))
     } else {
       // Return the best parse of the final state
       solutions(chunk.length).minBy(c => c.parse.score).parse.posNodes
     }
+
+    if (trace.enabled) {
+      trace.endChunk((1 to chunk.length).map(end => end -> solutions(end).map(_.parse)), result,
+        directMatch = false)
+    }
+    result
+  }
+
+  /**
+    * Best parses of one chunk under each of several profiles that agree on unknownNounGate,
+    * equal to parseKoreanChunk(chunk, profile) for each. Profiles whose dictionary fast path
+    * applies take it; the others share one lattice.
+    */
+  private[this] def parseKoreanChunk(chunk: KoreanToken, profiles: Seq[TokenizerProfile]): Seq[Seq[KoreanToken]] = {
+    val matched = directMatch(chunk)
+    if (matched != null) return profiles.map(_ => matched)
+
+    val features = new ChunkFeatures(chunk.text, MAX_TRACE_BACK)
+    val results: Array[Seq[KoreanToken]] = profiles.map { profile =>
+      val parsed = if (profile.dictionaryFastPath) parseDictionaryChunk(chunk, profile, features) else null
+      if (parsed != null) fastPathChunks.increment()
+      parsed
+    }.toArray
+    val latticeProfiles = profiles.indices.filter(results(_) == null)
+    if (latticeProfiles.isEmpty) return results
+    latticeChunks.increment()
+
+    // Candidates are ParsedChunks of the first profile and are scored under each with scoreUnder.
+    val base = profiles(latticeProfiles.head)
+    val initial = CandidateParse(ParsedChunk(Seq[KoreanToken](), 1, base), koreanPosTrie, ending = None)
+    // The beam of each profile per end position, as solutions in parseKoreanChunk
+    val beams = latticeProfiles.map { _ =>
+      val beam = new Array[List[ScoredParse]](chunk.length + 1)
+      beam(0) = List(ScoredParse(initial, 0f, 0))
+      beam
+    }
+
+    for (end <- 1 to chunk.length) {
+      val starts = end - 1 to(Seq(end - MAX_TRACE_BACK, 0).max, -1)
+      starts.foreach { start =>
+        val word = chunk.text.slice(start, end)
+        // Extensions of each partial parse in any beam, built once for all profiles
+        val extensions = new java.util.IdentityHashMap[CandidateParse, Seq[(CandidateParse, Int)]]
+        def extend(solution: CandidateParse): Seq[(CandidateParse, Int)] = {
+          var extended = extensions.get(solution)
+          if (extended == null) {
+            extended = possiblePoses(solution).filter { t =>
+              if (t.curTrie.curPos == Noun) {
+                !base.unknownNounGate || isNounCandidate(features, start, end, word)
+              } else {
+                koreanDictionary(t.curTrie.curPos).contains(word.toCharArray)
+              }
+            }.map { t =>
+              val candidateToAdd = ParsedChunk(
+                Seq(candidateToken(chunk, features, t.curTrie.curPos, start, end, word)), t.words, base)
+              val parse = solution.parse ++ candidateToAdd
+              (CandidateParse(parse, nextTries(t.curTrie), t.curTrie.ending), parse.posTieBreaker)
+            }
+            latticeCandidates.add(extended.size)
+            extensions.put(solution, extended)
+          }
+          extended
+        }
+
+        latticeProfiles.zip(beams).foreach { case (i, beam) =>
+          val profile = profiles(i)
+          val candidates = beam(start).flatMap { solution =>
+            extend(solution.candidate).map {
+              case (c, tieBreaker) => ScoredParse(c, c.parse.scoreUnder(profile), tieBreaker)
+            }
+          }
+          val currentSolutions = if (beam(end) == null) List() else beam(end)
+          // Stable, and ordered as sortBy (score, posTieBreaker) orders them
+          beam(end) = (currentSolutions ++ candidates).sortWith { (a, b) =>
+            val c = java.lang.Float.compare(a.score, b.score)
+            c < 0 || c == 0 && a.tieBreaker < b.tieBreaker
+          }.take(TOP_N_PER_STATE)
+        }
+      }
+    }
+
+    latticeProfiles.zip(beams).foreach { case (i, beam) =>
+      results(i) = if (beam(chunk.length).isEmpty) {
+        Seq(KoreanToken(chunk.text, Noun, 0, chunk.length, true))
+      } else {
+        beam(chunk.length).minBy(_.score).candidate.parse.posNodes
+      }
+    }
+    results
   }
 
   case class KoreanToken(text: String, pos: KoreanPos, offset: Int, length: Int,
@@ -215,8 +755,53 @@ object KoreanTokenizer {
     }
   }
 
+  /**
+    * A token of normalized text with its position in the original text.
+    */
+  case class AlignedToken(token: KoreanToken, originalOffset: Int, originalLength: Int)
+
+  /**
+    * Replacement of removed chars at offset with inserted.
+    */
+  case class TextEdit(offset: Int, removed: Int, inserted: String) {
+    def applyTo(text: CharSequence): String = {
+      val sb = new java.lang.StringBuilder(text.length - removed + inserted.length)
+      sb.append(text, 0, offset).append(inserted).append(text, offset + removed, text.length).toString
+    }
+  }
+
+  /**
+    * Tokens of one text under each of several profiles.
+    *
+    * @param tokens tokens per profile, in the order of the profiles
+    * @param separateRuns indices of the profiles tokenized separately instead of on a shared lattice
+    */
+  case class MultiProfileTokens(tokens: Seq[Seq[KoreanToken]], separateRuns: Seq[Int])
+
   private case class CandidateParse(parse: ParsedChunk, curTrie: List[KoreanPosTrie],
       ending: Option[KoreanPos])
 
+  private case class ScoredParse(candidate: CandidateParse, score: Float, tieBreaker: Int)
+
   private case class PossibleTrie(curTrie: KoreanPosTrie, words: Int)
+
+  /**
+    * The n smallest scores added so far; max is infinite until n scores are added.
+    */
+  private class BoundedScores(n: Int) {
+    private[this] val scores = Array.fill(n)(Float.PositiveInfinity)
+
+    def max: Float = scores(n - 1)
+
+    def add(score: Float): Unit = {
+      var i = n - 1
+      if (score < scores(i)) {
+        while (i > 0 && scores(i - 1) > score) {
+          scores(i) = scores(i - 1)
+          i -= 1
+        }
+        scores(i) = score
+      }
+    }
+  }
 }
\ No newline at end of file
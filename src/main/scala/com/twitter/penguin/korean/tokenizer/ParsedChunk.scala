@@ -24,8 +24,45 @@ import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
 import com.twitter.penguin.korean.util.KoreanPos._
 
 object ParsedChunk {
-  val suffixes = Set(Suffix, Eomi, Josa, PreEomi)
-  val preferredBeforeHaVerb = Set(Noun, ProperNoun, VerbPrefix)
+  val suffixes = KoreanPosSet(Suffix, Eomi, Josa, PreEomi)
+  val preferredBeforeHaVerb = KoreanPosSet(Noun, ProperNoun, VerbPrefix)
+  val nouns = KoreanPosSet(Noun, ProperNoun)
+
+  private[this] val defaultPreferredPatterns = TokenizerProfile.defaultProfile.preferredPatterns.toSet
+
+  /**
+    * True if minScore is a valid lower bound under this profile: every weight except the
+    * determiner and exclamation counts is non-negative, and the preferred patterns are
+    * among the default Noun/ProperNoun + Josa patterns.
+    */
+  protected[korean] def hasScoreBounds(profile: TokenizerProfile): Boolean = {
+    import profile._
+    Seq(tokenCount, unknown, wordCount, freq, unknownCoverage, exactMatch, allNoun, unknownPosCount,
+      initialPostPosition, haVerb, preferredPattern, spaceGuidePenalty).forall(_ >= 0) &&
+        preferredPatterns.forall(defaultPreferredPatterns.contains)
+  }
+
+  /**
+    * Lower bound of the score of any parse of a chunk of the given length with the given
+    * number of tokens (3 stands for 3 or more), words and unknown characters.
+    *
+    * Exact match, preferred pattern, all-noun and 하 verb penalties cannot all be avoided at
+    * once: a preferred Noun + Josa pair is not all nouns and has no 하 verb, and an all-noun
+    * parse has no verb. Non-noun tokens score 1 in the frequency average.
+    */
+  protected[korean] def minScore(profile: TokenizerProfile, tokens: Int, words: Int,
+      unknownChars: Int, length: Int): Float = {
+    import profile._
+    val base = tokens * tokenCount + words * wordCount +
+        (if (unknownChars > 0) unknown + unknownChars * unknownCoverage else 0f) +
+        length * (math.min(0f, determinerPosCount) + math.min(0f, exclamationPosCount))
+    tokens match {
+      case 1 => base + preferredPattern + haVerb
+      case 2 => base + exactMatch + Seq(allNoun + haVerb + freq / 2, preferredPattern + haVerb,
+        allNoun + preferredPattern + freq / 2).min
+      case _ => base + exactMatch + preferredPattern + math.min(allNoun, haVerb)
+    }
+  }
 }
 
 /**
@@ -53,6 +90,118 @@ case class ParsedChunk(posNodes: Seq[KoreanToken], words: Int,
       isNounHa * profile.haVerb +
       hasSpaceOutOfGuide * profile.spaceGuidePenalty
 
+  /**
+    * Weighted components of score, for TokenizerTrace.
+    */
+  def scoreBreakdown: Seq[(String, Float)] = Seq(
+    "tokenCount" -> countTokens * profile.tokenCount,
+    "unknown" -> countUnknowns * profile.unknown,
+    "wordCount" -> words * profile.wordCount,
+    "unknownCoverage" -> getUnknownCoverage * profile.unknownCoverage,
+    "freq" -> getFreqScore * profile.freq,
+    "unknownPosCount" -> countPos(Unknown) * profile.unknownPosCount,
+    "exactMatch" -> isExactMatch * profile.exactMatch,
+    "allNoun" -> isAllNouns * profile.allNoun,
+    "preferredPattern" -> isPreferredPattern * profile.preferredPattern,
+    "determinerPosCount" -> countPos(Determiner) * profile.determinerPosCount,
+    "exclamationPosCount" -> countPos(Exclamation) * profile.exclamationPosCount,
+    "initialPostPosition" -> isInitialPostPosition * profile.initialPostPosition,
+    "haVerb" -> isNounHa * profile.haVerb,
+    "spaceGuidePenalty" -> hasSpaceOutOfGuide * profile.spaceGuidePenalty
+  )
+
+  // Components of score that do not depend on the profile, for scoreUnder
+  private[this] lazy val components: Array[Int] = Array(countTokens, countUnknowns, getUnknownCoverage,
+    countPos(Unknown), isExactMatch, isAllNouns, countPos(Determiner), countPos(Exclamation),
+    isInitialPostPosition, isNounHa)
+
+  private[this] lazy val freqScore = getFreqScore
+
+  /**
+    * The score of this parse under another profile, equal to the score of
+    * ParsedChunk(posNodes, words, other). The components that do not depend on the profile
+    * are computed once, so scoring one parse under several profiles costs little more than one.
+    */
+  protected[korean] def scoreUnder(other: TokenizerProfile): Float = {
+    val c = components
+    c(0) * other.tokenCount +
+        c(1) * other.unknown +
+        words * other.wordCount +
+        c(2) * other.unknownCoverage +
+        freqScore * other.freq +
+        c(3) * other.unknownPosCount +
+        c(4) * other.exactMatch +
+        c(5) * other.allNoun +
+        preferredPatternUnder(other) * other.preferredPattern +
+        c(6) * other.determinerPosCount +
+        c(7) * other.exclamationPosCount +
+        c(8) * other.initialPostPosition +
+        c(9) * other.haVerb +
+        spaceOutOfGuideUnder(other) * other.spaceGuidePenalty
+  }
+
+  // Score components that adding a token can only keep or increase, for extensionLowerBound
+  private[this] lazy val extensionBase = countUnknowns * profile.unknown +
+      getUnknownCoverage * profile.unknownCoverage +
+      countPos(Unknown) * profile.unknownPosCount +
+      countPos(Determiner) * profile.determinerPosCount +
+      countPos(Exclamation) * profile.exclamationPosCount +
+      isInitialPostPosition * profile.initialPostPosition +
+      hasSpaceOutOfGuide * profile.spaceGuidePenalty +
+      profile.exactMatch
+
+  private[this] lazy val freqSum = getFreqScore * countTokens
+
+  /**
+    * Lower bound of extensionLowerBound over every token, for skipping a partial parse whose
+    * extensions are all bounded out.
+    */
+  protected[korean] lazy val extensionFloor: Float = if (posNodes.isEmpty) Float.NegativeInfinity else {
+    val tokens = countTokens + 1
+    extensionBase + tokens * profile.tokenCount + words * profile.wordCount +
+        freqSum / tokens * profile.freq +
+        math.min(0f, profile.determinerPosCount) + math.min(0f, profile.exclamationPosCount) +
+        isAllNouns * profile.allNoun +
+        (if (tokens > 2) profile.preferredPattern + isNounHa * profile.haVerb else 0f)
+  }
+
+  /**
+    * Lower bound of the score of this parse followed by one token, before the token is built.
+    * Valid when ParsedChunk.hasScoreBounds(profile).
+    *
+    * The bound is exact for tokens of a dictionary POS. A Noun may become an unknown proper
+    * noun, so its unknown, coverage and frequency terms are bounded by zero.
+    *
+    * @param pos POS of the token in the POS trie
+    * @param word text of the token
+    * @param offset offset of the token
+    * @param addedWords number of words the token adds
+    */
+  protected[korean] def extensionLowerBound(pos: KoreanPos, word: String, offset: Int,
+      addedWords: Int): Float = {
+    if (posNodes.isEmpty) return Float.NegativeInfinity
+
+    val tokens = countTokens + 1
+    val isNoun = pos == Noun
+    var bound = extensionBase + tokens * profile.tokenCount + (words + addedWords) * profile.wordCount +
+        (freqSum + (if (isNoun) 0f else 1f)) / tokens * profile.freq
+    if (pos == Determiner) bound += profile.determinerPosCount
+    if (pos == Exclamation) bound += profile.exclamationPosCount
+    if (isAllNouns == 1 || !isNoun) bound += profile.allNoun
+    if (tokens > 2 ||
+        !isNoun && !profile.preferredPatterns.contains(Seq(posNodes.head.pos, pos))) {
+      bound += profile.preferredPattern
+    }
+    val nounHa = if (tokens > 2) isNounHa else {
+      if (preferredBeforeHaVerb.contains(posNodes.head.pos) && pos == Verb && word.startsWith("하")) 0 else 1
+    }
+    bound += nounHa * profile.haVerb
+    if (profile.spaceGuide.nonEmpty && !suffixes.contains(pos) && !profile.spaceGuide.contains(offset)) {
+      bound += profile.spaceGuidePenalty
+    }
+    bound
+  }
+
   def countUnknowns = this.posNodes.count { p: KoreanToken => p.unknown }
 
   def countTokens = this.posNodes.size
@@ -61,22 +210,23 @@ case class ParsedChunk(posNodes: Seq[KoreanToken], words: Int,
 
   def isExactMatch = if (this.posNodes.size == 1) 0 else 1
 
-  def hasSpaceOutOfGuide = if (profile.spaceGuide.isEmpty) {
+  def hasSpaceOutOfGuide = spaceOutOfGuideUnder(profile)
+
+  private[this] def spaceOutOfGuideUnder(profile: TokenizerProfile) = if (profile.spaceGuide.isEmpty) {
     0
   } else {
-    this.posNodes
-        .filter{p: KoreanToken => !suffixes.contains(p.pos)}
-        .count {
-          p: KoreanToken => !profile.spaceGuide.contains(p.offset)
-        }
+    this.posNodes.count {
+      p: KoreanToken => !suffixes.contains(p.pos) && !profile.spaceGuide.contains(p.offset)
+    }
   }
 
 
-  def isAllNouns = if (this.posNodes.exists(
-    t => t.pos != Noun && t.pos != ProperNoun)) 1
+  def isAllNouns = if (this.posNodes.exists(t => !nouns.contains(t.pos))) 1
   else 0
 
-  def isPreferredPattern = if (
+  def isPreferredPattern = preferredPatternUnder(profile)
+
+  private[this] def preferredPatternUnder(profile: TokenizerProfile) = if (
     posNodes.size == 2 && profile.preferredPatterns.contains(posNodes.map(_.pos))
   ) 0
   else 1
@@ -94,7 +244,7 @@ case class ParsedChunk(posNodes: Seq[KoreanToken], words: Int,
   }
 
   def getFreqScore = this.posNodes.foldLeft(0f) {
-    case (output: Float, p: KoreanToken) if p.pos == Noun || p.pos == ProperNoun =>
+    case (output: Float, p: KoreanToken) if nouns.contains(p.pos) =>
       output + (1f - koreanEntityFreq.getOrElse(p.text, 0f))
     case (output: Float, p: KoreanToken) => output + 1.0f
   } / this.posNodes.size
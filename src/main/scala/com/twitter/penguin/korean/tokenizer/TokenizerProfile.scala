@@ -41,5 +41,13 @@ case class TokenizerProfile(
     preferredPattern: Float = 0.6f,
     preferredPatterns: Seq[Seq[Any]] = Seq(Seq(Noun, Josa), Seq(ProperNoun, Josa)),
     spaceGuide: Set[Int] = Set[Int](),
-    spaceGuidePenalty: Float = 3.0f
+    spaceGuidePenalty: Float = 3.0f,
+    // Parse chunks of a two-token dictionary shape without the lattice when provably equivalent
+    dictionaryFastPath: Boolean = true,
+    // Skip lattice candidates whose score is bounded out of the beam before building them
+    scoreBoundPruning: Boolean = false,
+    // Only allow unknown nouns whose syllables are plausible for a noun (see UnknownNounModel)
+    unknownNounGate: Boolean = false,
+    // Parse chunks by greedy longest dictionary match instead of the lattice; fast but less accurate
+    greedy: Boolean = false
 )
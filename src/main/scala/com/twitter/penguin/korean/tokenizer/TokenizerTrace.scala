@@ -0,0 +1,116 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.tokenizer
+
+import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken
+import com.twitter.penguin.korean.tokenizer.TokenizerTrace._
+
+import scala.collection.mutable.ArrayBuffer
+
+object TokenizerTrace {
+
+  /**
+   * A partial parse of chunk[0, end) whose last token covers chunk[start, end).
+   *
+   * @param breakdown weighted score components, summing to score
+   */
+  case class CandidateTrace(start: Int, end: Int, tokens: Seq[KoreanToken], score: Float,
+      breakdown: Seq[(String, Float)])
+
+  /**
+   * The lattice of one Korean chunk.
+   *
+   * @param directMatch true if the whole chunk was found in a dictionary and no lattice was built
+   * @param candidates every candidate generated, in generation order
+   * @param beams the candidates kept per end position, best first
+   * @param result the chosen parse
+   * @param nanos time spent parsing the chunk
+   */
+  case class ChunkTrace(chunk: KoreanToken, directMatch: Boolean, candidates: Seq[CandidateTrace],
+      beams: Seq[(Int, Seq[CandidateTrace])], result: Seq[KoreanToken], nanos: Long) {
+    override def toString: String = {
+      val sb = new StringBuilder
+      sb.append("%s: %d candidates, %.3f ms%s\n".format(chunk.text, candidates.size, nanos / 1e6,
+        if (directMatch) ", direct match" else ""))
+      beams.foreach { case (end, beam) =>
+        sb.append("  [%d] %d candidates\n".format(end, candidates.count(_.end == end)))
+        beam.foreach { c =>
+          sb.append("    %.4f %s\n      %s\n".format(c.score, c.tokens.mkString(" "),
+            c.breakdown.filter(_._2 != 0f).map { case (name, v) => "%s=%.4f".format(name, v) }.mkString(" ")))
+        }
+      }
+      sb.append("  => ").append(result.mkString(" ")).toString
+    }
+  }
+
+  private def candidateTrace(start: Int, end: Int, parse: ParsedChunk): CandidateTrace =
+    CandidateTrace(start, end, parse.posNodes, parse.score, parse.scoreBreakdown)
+
+  /**
+   * The trace used when tracing is off. Call sites check enabled before building any arguments,
+   * so the disabled path allocates nothing.
+   */
+  val Disabled: TokenizerTrace = new TokenizerTrace {
+    override def enabled: Boolean = false
+
+    override protected[korean] def startChunk(chunk: KoreanToken): Unit = {}
+
+    override protected[korean] def addCandidates(start: Int, end: Int, parses: Seq[ParsedChunk]): Unit = {}
+
+    override protected[korean] def endChunk(beams: Seq[(Int, Seq[ParsedChunk])], result: Seq[KoreanToken],
+        directMatch: Boolean): Unit = {}
+  }
+}
+
+/**
+ * Collects the lattice of every Korean chunk parsed by KoreanTokenizer.tokenize(text, profile, trace):
+ * the candidates generated per end position, the beam kept, the score breakdown of each candidate
+ * and the time spent per chunk. Not thread-safe; use one trace per tokenize call.
+ */
+class TokenizerTrace {
+  def enabled: Boolean = true
+
+  private[this] val chunkTraces = new ArrayBuffer[ChunkTrace]
+  private[this] var currentChunk: KoreanToken = _
+  private[this] var currentStart = 0L
+  private[this] val currentCandidates = new ArrayBuffer[CandidateTrace]
+
+  def chunks: Seq[ChunkTrace] = chunkTraces
+
+  protected[korean] def startChunk(chunk: KoreanToken): Unit = {
+    currentChunk = chunk
+    currentCandidates.clear()
+    currentStart = System.nanoTime()
+  }
+
+  protected[korean] def addCandidates(start: Int, end: Int, parses: Seq[ParsedChunk]): Unit = {
+    currentCandidates ++= parses.map(candidateTrace(start, end, _))
+  }
+
+  protected[korean] def endChunk(beams: Seq[(Int, Seq[ParsedChunk])], result: Seq[KoreanToken],
+      directMatch: Boolean): Unit = {
+    val nanos = System.nanoTime() - currentStart
+    val beamTraces = beams.map { case (end, parses) =>
+      end -> parses.map(p => candidateTrace(p.posNodes.last.offset - currentChunk.offset, end, p))
+    }
+    chunkTraces += ChunkTrace(currentChunk, directMatch, currentCandidates.toVector, beamTraces, result, nanos)
+  }
+
+  override def toString: String = chunkTraces.mkString("\n")
+}
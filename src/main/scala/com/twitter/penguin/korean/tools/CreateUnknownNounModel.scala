@@ -0,0 +1,42 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.tools
+
+import java.io.File
+
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
+import com.twitter.penguin.korean.util.UnknownNounModel
+
+/**
+ * Build the unknown noun model from the noun dictionaries and entity frequencies.
+ * Run after updating the noun dictionaries.
+ */
+object CreateUnknownNounModel extends Runnable {
+  def run {
+    val nouns = (nounResources.iterator.flatMap(readFileByLineFromResources) ++
+        readFileByLineFromResources("freq/entity-freq.txt.gz").filter(_.contains("\t")).map(_.split("\t")(0)))
+        .map(_.trim).toSet
+
+    val model = UnknownNounModel.build(nouns.iterator)
+    val outputFile = new File("src/main/resources/com/twitter/penguin/korean/util/" + unknownNounModelResource)
+    model.write(outputFile)
+    System.err.println("Wrote %d nouns, %d syllable pairs to %s (%d bytes).".format(
+      nouns.size, model.bigramCount, outputFile, outputFile.length))
+  }
+}
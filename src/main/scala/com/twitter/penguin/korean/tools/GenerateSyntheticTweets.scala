@@ -0,0 +1,211 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.tools
+
+import java.io._
+import java.nio.charset.StandardCharsets
+import java.util.Random
+import java.util.zip.GZIPOutputStream
+
+import com.twitter.penguin.korean.util.KoreanConjugation._
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
+
+/**
+ * Generate a synthetic corpus of Korean tweets, one per line, for load tests and batch tools.
+ *
+ * Usage: GenerateSyntheticTweets [--seed=N] [--count=N] [--words=N] [--max-length=N]
+ *                                [--no-space=rate] [--typo=rate] [--unknown=rate]
+ *                                [--entity=rate] [--jamo=rate] [--output=path[.gz]]
+ *
+ * Each tweet is a run of 어절 built from the bundled dictionaries: nouns with josa, conjugated
+ * verbs and adjectives with eomi, adverbs and exclamations. The rates control how often a
+ * space between 어절 is dropped, an 어절 is replaced by a typo from typos.txt, a noun is made
+ * of syllables recombined from known nouns, an 어절 is a mention, hashtag, URL or number, and
+ * a jamo run or emoticon is appended. The same seed and options always produce the same corpus.
+ * Tweets are streamed, so millions of them can be written without holding them in memory.
+ */
+object GenerateSyntheticTweets {
+  case class Options(seed: Long = 0L,
+      count: Int = 100000,
+      words: Int = 8,
+      maxLength: Int = 140,
+      noSpaceRate: Double = 0.15,
+      typoRate: Double = 0.03,
+      unknownRate: Double = 0.05,
+      entityRate: Double = 0.08,
+      jamoRate: Double = 0.1,
+      output: Option[String] = None)
+
+  private val Jamo = Vector("ㅋㅋ", "ㅋㅋㅋ", "ㅋㅋㅋㅋㅋ", "ㅎㅎ", "ㅎㅎㅎ", "ㅠㅠ", "ㅜㅜ", "ㅠㅠㅠ", "ㄷㄷ", "ㅇㅇ", "ㄱㄱ")
+  private val Emoticons = Vector("^^", "^_^", ";;", "...", "!!", "?", "ㅡㅡ", "♥", "♡", "~")
+  private val Hosts = Vector("t.co", "bit.ly", "www.naver.com", "blog.naver.com", "youtu.be")
+  private val Alphanumeric = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789"
+
+  private def resource(filename: String): Vector[String] =
+    readFileByLineFromResources(filename).map(_.trim).filter(_.nonEmpty).toVector
+
+  private lazy val nouns = resource("noun/nouns.txt")
+  // Sorted by frequency, so drawing with skewed indices favors common entities.
+  private lazy val entities = resource("freq/entity-freq.txt.gz").filter(_.contains("\t")).map(_.split("\t")(0))
+  private lazy val josas = resource("josa/josa.txt")
+  private lazy val verbs = resource("verb/verb.txt")
+  private lazy val adjectives = resource("adjective/adjective.txt")
+  private lazy val eomis = resource("verb/eomi.txt")
+  private lazy val adverbs = resource("adverb/adverb.txt")
+  private lazy val exclamations = resource("auxiliary/exclamation.txt")
+  private lazy val typos = resource("typos/typos.txt").map(_.split(" ")(0))
+
+  /**
+   * An endless iterator of tweets; take `count` of them.
+   */
+  class TweetIterator(options: Options) extends Iterator[String] {
+    private[this] val random = new Random(options.seed)
+    private[this] val conjugations = new java.util.HashMap[String, Vector[String]]
+
+    private[this] def pick(words: Vector[String]): String = words(random.nextInt(words.length))
+
+    // Skewed towards the head of the list.
+    private[this] def pickHead(words: Vector[String]): String = {
+      val u = random.nextDouble()
+      words((words.length * u * u * u).toInt)
+    }
+
+    // The shorter of two picks; short josa and eomi are the common ones.
+    private[this] def pickShort(words: Vector[String]): String = {
+      val a = pick(words)
+      val b = pick(words)
+      if (a.length <= b.length) a else b
+    }
+
+    private[this] def chance(rate: Double): Boolean = random.nextDouble() < rate
+
+    private[this] def unknownNoun: String = {
+      val length = 2 + random.nextInt(3)
+      (1 to length).map { _ =>
+        val noun = pick(nouns)
+        noun.charAt(random.nextInt(noun.length))
+      }.mkString
+    }
+
+    private[this] def noun: String = {
+      val stem = if (chance(options.unknownRate)) unknownNoun
+      else if (chance(0.5)) pickHead(entities) else pick(nouns)
+      if (chance(0.6)) stem + pickShort(josas) else stem
+    }
+
+    private[this] def predicate: String = {
+      val isAdjective = chance(0.3)
+      val stem = pick(if (isAdjective) adjectives else verbs)
+      var conjugated = conjugations.get(stem)
+      if (conjugated == null) {
+        conjugated = conjugatePredicated(Set(stem), isAdjective).toVector.sorted
+        conjugations.put(stem, conjugated)
+      }
+      pick(conjugated) + (if (chance(0.8)) pickShort(eomis) else "")
+    }
+
+    private[this] def entity: String = random.nextInt(4) match {
+      case 0 => "@" + (1 to 4 + random.nextInt(8)).map(_ => Alphanumeric.charAt(random.nextInt(26))).mkString
+      case 1 => "#" + (if (chance(0.5)) pickHead(entities) else pick(nouns))
+      case 2 => "http://" + pick(Hosts) + "/" +
+          (1 to 6 + random.nextInt(5)).map(_ => Alphanumeric.charAt(random.nextInt(Alphanumeric.length))).mkString
+      case _ => random.nextInt(10000).toString
+    }
+
+    private[this] def eojeol: String = {
+      val word = if (chance(options.entityRate)) entity
+      else if (chance(options.typoRate)) pick(typos)
+      else random.nextInt(10) match {
+        case 0 => pick(adverbs)
+        case 1 => pick(exclamations)
+        case n if n < 6 => noun
+        case _ => predicate
+      }
+      if (chance(options.jamoRate)) word + (if (chance(0.7)) pick(Jamo) else pick(Emoticons)) else word
+    }
+
+    override def hasNext: Boolean = true
+
+    override def next(): String = {
+      // Exponentially distributed number of 어절 with the given mean, at least one.
+      val words = 1 + (-math.log(1 - random.nextDouble()) * (options.words - 1)).toInt
+      val sb = new StringBuilder
+      var i = 0
+      while (i < words && sb.length < options.maxLength) {
+        if (i > 0 && !chance(options.noSpaceRate)) sb.append(' ')
+        sb.append(eojeol)
+        i += 1
+      }
+      if (sb.length > options.maxLength) sb.setLength(options.maxLength)
+      sb.toString.trim
+    }
+  }
+
+  def tweets(options: Options): Iterator[String] = new TweetIterator(options).take(options.count)
+
+  private def rate(arg: String, prefix: String): Double = {
+    val value = arg.stripPrefix(prefix).toDouble
+    require(value >= 0 && value <= 1, "%s must be between 0 and 1".format(prefix.init))
+    value
+  }
+
+  def parseArgs(args: Array[String]): Option[Options] = {
+    args.foldLeft(Option(Options())) {
+      case (Some(o), arg) if arg.startsWith("--seed=") => Some(o.copy(seed = arg.stripPrefix("--seed=").toLong))
+      case (Some(o), arg) if arg.startsWith("--count=") => Some(o.copy(count = arg.stripPrefix("--count=").toInt))
+      case (Some(o), arg) if arg.startsWith("--words=") => Some(o.copy(words = arg.stripPrefix("--words=").toInt))
+      case (Some(o), arg) if arg.startsWith("--max-length=") =>
+        Some(o.copy(maxLength = arg.stripPrefix("--max-length=").toInt))
+      case (Some(o), arg) if arg.startsWith("--no-space=") => Some(o.copy(noSpaceRate = rate(arg, "--no-space=")))
+      case (Some(o), arg) if arg.startsWith("--typo=") => Some(o.copy(typoRate = rate(arg, "--typo=")))
+      case (Some(o), arg) if arg.startsWith("--unknown=") => Some(o.copy(unknownRate = rate(arg, "--unknown=")))
+      case (Some(o), arg) if arg.startsWith("--entity=") => Some(o.copy(entityRate = rate(arg, "--entity=")))
+      case (Some(o), arg) if arg.startsWith("--jamo=") => Some(o.copy(jamoRate = rate(arg, "--jamo=")))
+      case (Some(o), arg) if arg.startsWith("--output=") => Some(o.copy(output = Some(arg.stripPrefix("--output="))))
+      case _ => None
+    }.filter(o => o.words > 0 && o.maxLength > 0 && o.count >= 0)
+  }
+
+  def main(args: Array[String]) {
+    val options = parseArgs(args).getOrElse {
+      println("Usage: GenerateSyntheticTweets [--seed=N] [--count=N] [--words=N] [--max-length=N] " +
+          "[--no-space=rate] [--typo=rate] [--unknown=rate] [--entity=rate] [--jamo=rate] [--output=path[.gz]]")
+      return
+    }
+
+    val stream: OutputStream = options.output match {
+      case Some(path) if path.endsWith(".gz") => new GZIPOutputStream(new FileOutputStream(path), 1 << 16)
+      case Some(path) => new FileOutputStream(path)
+      case None => System.out
+    }
+    val out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16)
+    val start = System.nanoTime()
+    var written = 0
+    try {
+      tweets(options).foreach { tweet =>
+        out.write(tweet)
+        out.write('\n')
+        written += 1
+      }
+    } finally {
+      out.close()
+    }
+    System.err.println("Wrote %d tweets in %d ms.".format(written, (System.nanoTime() - start) / 1000000))
+  }
+}
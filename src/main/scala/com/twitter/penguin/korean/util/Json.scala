@@ -0,0 +1,74 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.util
+
+import com.twitter.penguin.korean.phrase_extractor.KoreanPhraseExtractor.KoreanPhrase
+import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken
+
+/**
+ * Minimal JSON writer for tokens and phrases, used by the batch tools and the text service.
+ */
+protected[korean] object Json {
+  def appendString(s: CharSequence, out: java.lang.StringBuilder): Unit = {
+    out.append('"')
+    var i = 0
+    while (i < s.length) {
+      s.charAt(i) match {
+        case '"' => out.append("\\\"")
+        case '\\' => out.append("\\\\")
+        case '\n' => out.append("\\n")
+        case '\r' => out.append("\\r")
+        case '\t' => out.append("\\t")
+        case c if c < 0x20 => out.append("\\u%04x".format(c.toInt))
+        case c => out.append(c)
+      }
+      i += 1
+    }
+    out.append('"')
+  }
+
+  def appendTokens(tokens: Seq[KoreanToken], out: java.lang.StringBuilder): Unit = {
+    out.append('[')
+    var first = true
+    tokens.foreach { t =>
+      if (!first) out.append(',')
+      first = false
+      out.append("{\"text\":")
+      appendString(t.text, out)
+      out.append(",\"pos\":\"").append(t.pos).append("\",\"offset\":").append(t.offset)
+          .append(",\"length\":").append(t.length).append(",\"unknown\":").append(t.unknown)
+          .append('}')
+    }
+    out.append(']')
+  }
+
+  def appendPhrases(phrases: Seq[KoreanPhrase], out: java.lang.StringBuilder): Unit = {
+    out.append('[')
+    var first = true
+    phrases.foreach { p =>
+      if (!first) out.append(',')
+      first = false
+      out.append("{\"text\":")
+      appendString(p.text, out)
+      out.append(",\"pos\":\"").append(p.pos).append("\",\"offset\":").append(p.offset)
+          .append(",\"length\":").append(p.length).append('}')
+    }
+    out.append(']')
+  }
+}
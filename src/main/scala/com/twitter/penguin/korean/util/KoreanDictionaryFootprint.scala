@@ -0,0 +1,167 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.util
+
+import java.lang.management.ManagementFactory
+import javax.management.ObjectName
+
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
+
+import scala.beans.BeanProperty
+import scala.collection.JavaConversions._
+
+/**
+ * Memory footprint of one dictionary.
+ *
+ * @param name dictionary name, with the POS for koreanDictionary (koreanDictionary.Noun)
+ * @param entries number of entries
+ * @param capacity hash table slots, -1 for dictionaries that are not open hash tables
+ * @param loadFactor entries / capacity, NaN when capacity is -1
+ * @param estimatedBytes estimated retained heap bytes, assuming compressed references
+ * @param loadMillis time the last load took
+ * @param initialized false for optional dictionaries not loaded yet or released
+ * @param releasable true for optional dictionaries, loaded again on next use after release
+ */
+case class DictionaryFootprint(
+    @BeanProperty name: String,
+    @BeanProperty entries: Int,
+    @BeanProperty capacity: Int,
+    @BeanProperty loadFactor: Double,
+    @BeanProperty estimatedBytes: Long,
+    @BeanProperty loadMillis: Long,
+    @BeanProperty initialized: Boolean,
+    @BeanProperty releasable: Boolean)
+
+/**
+ * JMX view of KoreanDictionaryFootprint.
+ */
+trait KoreanDictionaryMXBean {
+  def getDictionaries: java.util.List[DictionaryFootprint]
+
+  def getEstimatedBytes: Long
+
+  def releaseOptionalDictionaries(): Int
+}
+
+/**
+ * Reports the entry count, capacity, load factor, estimated heap bytes and load time of every
+ * dictionary in KoreanDictionaryProvider, and releases the optional ones.
+ *
+ * Byte counts are estimates from object layouts of a 64-bit JVM with compressed references,
+ * good for sizing heaps and spotting growth after dictionary updates, not for exact accounting.
+ * Memory-mapped dictionaries count only their on-heap runtime additions. The tokenizer keeps no
+ * caches of its own beyond these dictionaries.
+ */
+object KoreanDictionaryFootprint {
+  val ObjectName = new ObjectName("com.twitter.penguin.korean:type=KoreanDictionary")
+
+  // String: header, hash and array reference
+  private[this] val StringBytes = 24
+  // Map entry node: header, hash, key, value and next references
+  private[this] val EntryBytes = 32
+  private[this] val BoxedBytes = 16
+
+  private[this] def stringBytes(s: CharSequence): Long =
+    StringBytes + CharArrayMap.arrayBytes(2, s.length)
+
+  private[this] def charArraySet(name: String, set: CharArraySet, loadMillis: Long,
+      initialized: Boolean = true, releasable: Boolean = false): DictionaryFootprint = {
+    val capacity = set.capacity
+    DictionaryFootprint(name, set.size, capacity,
+      if (capacity > 0) set.size.toDouble / capacity else 0.0, set.estimatedBytes, loadMillis,
+      initialized, releasable)
+  }
+
+  private[this] def stringMapBytes(map: Map[String, String]): Long = map.foldLeft(0L) {
+    case (bytes, (key, value)) => bytes + EntryBytes + stringBytes(key) + stringBytes(value)
+  }
+
+  private[this] def optional(dictionary: ReleasableDictionary[_ <: AnyRef]): DictionaryFootprint = {
+    val name = dictionary.name
+    dictionary.current match {
+      case None =>
+        DictionaryFootprint(name, 0, 0, 0.0, 0L, dictionary.loadMillis, initialized = false, releasable = true)
+      case Some(model: UnknownNounModel) =>
+        DictionaryFootprint(name, model.bigramCount, -1, Double.NaN, model.estimatedBytes,
+          dictionary.loadMillis, initialized = true, releasable = true)
+      case Some(set: CharArraySet) =>
+        charArraySet(name, set, dictionary.loadMillis, releasable = true)
+      case Some(sets: Map[_, _]) if sets.values.forall(_.isInstanceOf[CharArraySet]) =>
+        val values = sets.values.map(_.asInstanceOf[CharArraySet])
+        val capacity = values.map(_.capacity).sum
+        val entries = values.map(_.size).sum
+        DictionaryFootprint(name, entries, capacity, if (capacity > 0) entries.toDouble / capacity else 0.0,
+          values.map(_.estimatedBytes).sum, dictionary.loadMillis, initialized = true, releasable = true)
+      case Some(maps: Map[_, _]) =>
+        val values = maps.values.map(_.asInstanceOf[Map[String, String]])
+        DictionaryFootprint(name, values.map(_.size).sum, -1, Double.NaN,
+          values.map(stringMapBytes).sum, dictionary.loadMillis, initialized = true, releasable = true)
+      case Some(freqs: collection.mutable.Map[_, _]) =>
+        // java.util.HashMap doubles its table from 16 slots past a load factor of 0.75.
+        val capacity = Iterator.iterate(16)(_ * 2).find(_ * 3 / 4 >= freqs.size).get
+        val bytes = CharArrayMap.arrayBytes(4, capacity) + freqs.keys.foldLeft(0L) {
+          case (sum, key) => sum + EntryBytes + BoxedBytes + stringBytes(key.asInstanceOf[CharSequence])
+        }
+        DictionaryFootprint(name, freqs.size, capacity, freqs.size.toDouble / capacity, bytes,
+          dictionary.loadMillis, initialized = true, releasable = true)
+      case Some(other) =>
+        throw new IllegalStateException("Unknown dictionary type: " + other.getClass)
+    }
+  }
+
+  /**
+   * Footprint of every dictionary. Optional dictionaries are not loaded by this call.
+   */
+  def footprints: Seq[DictionaryFootprint] = {
+    val dictionaries = koreanDictionary.toSeq.map { case (pos, set) =>
+      charArraySet("koreanDictionary." + pos, set, dictionaryLoadMillis.get(pos).map(_.longValue).getOrElse(0L))
+    }
+    dictionaries ++ Seq(charArraySet("properNouns", properNouns, properNounsLoadMillis)) ++
+        optionalDictionaries.map(optional)
+  }
+
+  def estimatedBytes: Long = footprints.map(_.estimatedBytes).sum
+
+  /**
+   * Release the optional dictionaries (entity frequencies, spam nouns, names, typos,
+   * predicate stems and the unknown noun model). Each is loaded again when next used.
+   *
+   * @return number of dictionaries released
+   */
+  def releaseOptionalDictionaries(): Int = optionalDictionaries.count(_.release())
+
+  /**
+   * Register the KoreanDictionaryMXBean under ObjectName with the platform MBeanServer, if
+   * not registered yet.
+   */
+  def registerMBean(): Unit = {
+    val server = ManagementFactory.getPlatformMBeanServer
+    synchronized {
+      if (!server.isRegistered(ObjectName)) {
+        server.registerMBean(new KoreanDictionaryMXBean {
+          override def getDictionaries: java.util.List[DictionaryFootprint] = seqAsJavaList(footprints)
+
+          override def getEstimatedBytes: Long = estimatedBytes
+
+          override def releaseOptionalDictionaries(): Int = KoreanDictionaryFootprint.releaseOptionalDictionaries()
+        }, ObjectName)
+      }
+    }
+  }
+}
@@ -18,7 +18,10 @@
 
 package com.twitter.penguin.korean.util
 
-import java.io.InputStream
+import java.io.{File, InputStream}
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
 import java.util.zip.GZIPInputStream
 
 import com.twitter.penguin.korean.util.KoreanConjugation._
@@ -99,59 +102,236 @@ object KoreanDictionaryProvider {
     new CharArraySet(10000, false)
   }
 
-  lazy val koreanEntityFreq: collection.mutable.Map[CharSequence, Float] =
-    readWordFreqs("freq/entity-freq.txt.gz")
+  private[this] val entityFreqDictionary = new ReleasableDictionary("koreanEntityFreq",
+    () => readWordFreqs("freq/entity-freq.txt.gz"))
 
-  def addWordsToDictionary(pos: KoreanPos, words: Seq[String]): Unit = {
+  def koreanEntityFreq: collection.mutable.Map[CharSequence, Float] = entityFreqDictionary.get
+
+  /**
+   * Add words to the dictionary of a POS. They are kept when reloadDictionary rebuilds it.
+   */
+  def addWordsToDictionary(pos: KoreanPos, words: Seq[String]): Unit = synchronized {
+    addedWords += pos -> (added(pos) ++ words)
     koreanDictionary(pos).addAll(words)
   }
 
+  protected[korean] val nounResources = Seq(
+    "noun/nouns.txt", "noun/entities.txt", "noun/spam.txt",
+    "noun/names.txt", "noun/twitter.txt", "noun/lol.txt",
+    "noun/slangs.txt", "noun/company_names.txt",
+    "noun/foreign.txt", "noun/geolocations.txt", "noun/profane.txt",
+    "substantives/given_names.txt", "noun/kpop.txt", "noun/bible.txt",
+    "noun/pokemon.txt", "noun/congress.txt", "noun/wikipedia_title_nouns.txt"
+  )
+
+  private[this] val dictionaryResources: Seq[(KoreanPos, Seq[String])] = Seq(
+    Noun -> nounResources,
+    Verb -> Seq("verb/verb.txt"),
+    Adjective -> Seq("adjective/adjective.txt"),
+    Adverb -> Seq("adverb/adverb.txt"),
+    Determiner -> Seq("auxiliary/determiner.txt"),
+    Exclamation -> Seq("auxiliary/exclamation.txt"),
+    Josa -> Seq("josa/josa.txt"),
+    Eomi -> Seq("verb/eomi.txt"),
+    PreEomi -> Seq("verb/pre_eomi.txt"),
+    Conjunction -> Seq("auxiliary/conjunctions.txt"),
+    NounPrefix -> Seq("substantives/noun_prefix.txt"),
+    VerbPrefix -> Seq("verb/verb_prefix.txt"),
+    Suffix -> Seq("substantives/suffix.txt")
+  )
+
+  private[this] def resourcesOf(pos: KoreanPos): Seq[String] =
+    dictionaryResources.find(_._1 == pos).map(_._2).getOrElse(
+      throw new IllegalArgumentException("No dictionary for " + pos))
+
+  /**
+   * Hash of the names and bytes of resources, to tell a stale mapped dictionary.
+   */
+  protected[korean] def resourceHash(filenames: Seq[String]): Long = {
+    val digest = MessageDigest.getInstance("SHA-1")
+    val buffer = new Array[Byte](1 << 16)
+    filenames.foreach { filename =>
+      digest.update(filename.getBytes(StandardCharsets.UTF_8))
+      val stream = getClass.getResourceAsStream(filename)
+      require(stream != null, "Resource not loaded: " + filename)
+      try {
+        var read = stream.read(buffer)
+        while (read >= 0) {
+          digest.update(buffer, 0, read)
+          read = stream.read(buffer)
+        }
+      } finally {
+        stream.close()
+      }
+    }
+    ByteBuffer.wrap(digest.digest()).getLong
+  }
+
+  /**
+   * Build the dictionary of a POS from the bundled resources and extra words.
+   * Verbs and adjectives are conjugated.
+   */
+  protected[korean] def buildDictionary(pos: KoreanPos, extraWords: Iterable[String]): CharArraySet = {
+    val filenames = resourcesOf(pos)
+    pos match {
+      case Verb => conjugatePredicatesToCharArraySet(readWordsAsSet(filenames: _*) ++ extraWords)
+      case Adjective =>
+        conjugatePredicatesToCharArraySet(readWordsAsSet(filenames: _*) ++ extraWords, isAdjective = true)
+      case _ =>
+        val set = readWords(filenames: _*)
+        extraWords.foreach(set.add)
+        set
+    }
+  }
+
+  /**
+   * Replace the dictionary of a POS. Concurrent readers see either the old or the new set.
+   */
+  protected[korean] def replaceDictionary(pos: KoreanPos, dictionary: CharArraySet): Unit = {
+    koreanDictionary.put(pos, dictionary)
+  }
+
+  // Extra words of the dictionaries rebuilt by reloadDictionary, by POS
+  @volatile private[this] var reloadedWords = Map[KoreanPos, Seq[String]]()
+
+  // Words added by addWordsToDictionary, by POS
+  private[this] var addedWords = Map[KoreanPos, Seq[String]]()
+
+  private[this] def reloaded(pos: KoreanPos): Seq[String] = reloadedWords.getOrElse(pos, Nil)
+
+  private[this] def added(pos: KoreanPos): Seq[String] = addedWords.getOrElse(pos, Nil)
+
+  /**
+   * Rebuild the dictionary of a POS with the backend of the current one: a mapped dictionary
+   * keeps its mapping and gets the extra words in its overlay, any other is rebuilt on heap.
+   */
+  private[this] def rebuildDictionary(pos: KoreanPos, extraWords: Seq[String]): CharArraySet =
+    koreanDictionary(pos) match {
+      case mapped: MappedCharArraySet =>
+        val set = mapped.withoutAdditions()
+        pos match {
+          case Verb => set.addAll(conjugatePredicatesToCharArraySet(extraWords.toSet))
+          case Adjective => set.addAll(conjugatePredicatesToCharArraySet(extraWords.toSet, isAdjective = true))
+          case _ => extraWords.foreach(set.add)
+        }
+        set
+      case _ => buildDictionary(pos, extraWords)
+    }
+
+  /**
+   * Rebuild the dictionary of a POS from the bundled resources, extra words and the words
+   * added by addWordsToDictionary, swap it in and rebuild the dictionaries derived from it:
+   * predicateStems for verbs and adjectives, so every conjugation the tokenizer can emit has a
+   * stem, and properNouns for nouns. Extra nouns are proper nouns, like the bundled entity
+   * lists.
+   *
+   * @return the new dictionary
+   */
+  protected[korean] def reloadDictionary(pos: KoreanPos, extraWords: Seq[String]): CharArraySet = synchronized {
+    val dictionary = rebuildDictionary(pos, extraWords ++ added(pos))
+    reloadedWords += pos -> extraWords
+    pos match {
+      case Verb | Adjective =>
+        // Swap the stems first, so a tokenizer emitting a new conjugation finds its stem.
+        predicateStemsDictionary.reload()
+        replaceDictionary(pos, dictionary)
+      case Noun =>
+        properNounSet = buildProperNouns()
+        replaceDictionary(pos, dictionary)
+      case _ => replaceDictionary(pos, dictionary)
+    }
+    dictionary
+  }
+
+  /**
+   * When the system property korean.dictionary.mapped.dir names a directory, the bundled
+   * dictionaries are served from memory-mapped files in it (see MappedCharArraySet), which are
+   * written on first use and shared by every JVM pointing at the same directory. Each file
+   * records a hash of its bundled resources and is rewritten when they change.
+   */
+  protected[korean] val mappedDictionaryDirectory: Option[File] =
+    sys.props.get("korean.dictionary.mapped.dir").map(new File(_))
+
+  // Load time of the bundled dictionaries in milliseconds
+  protected[korean] val dictionaryLoadMillis = new KoreanPosMap[java.lang.Long]
+
+  /**
+   * Open the mapped dictionary of a POS, writing it first when the file is missing, of an
+   * older format or built from other resources.
+   */
+  protected[korean] def loadMappedDictionary(pos: KoreanPos, file: File): MappedCharArraySet = {
+    val sourceHash = resourceHash(resourcesOf(pos))
+    val existing = if (!file.isFile) None else {
+      try {
+        Some(MappedCharArraySet.open(file))
+      } catch {
+        case e: IllegalArgumentException => None
+      }
+    }
+    existing.filter(_.sourceHash == sourceHash).getOrElse {
+      file.getAbsoluteFile.getParentFile.mkdirs()
+      MappedCharArraySet.write(file, buildDictionary(pos, Nil), sourceHash)
+      MappedCharArraySet.open(file)
+    }
+  }
+
+  private[this] def loadDictionary(pos: KoreanPos): CharArraySet = mappedDictionaryDirectory match {
+    case Some(directory) => loadMappedDictionary(pos, new File(directory, pos + ".dict"))
+    case None => buildDictionary(pos, Nil)
+  }
+
+  // Indexed by POS id, and safely publishes sets rebuilt by replaceDictionary.
   val koreanDictionary: collection.mutable.Map[KoreanPos, CharArraySet] = {
-    val map: collection.mutable.Map[KoreanPos, CharArraySet] =
-      new java.util.HashMap[KoreanPos, CharArraySet]
-
-    map += Noun -> readWords(
-      "noun/nouns.txt", "noun/entities.txt", "noun/spam.txt",
-      "noun/names.txt", "noun/twitter.txt", "noun/lol.txt",
-      "noun/slangs.txt", "noun/company_names.txt",
-      "noun/foreign.txt", "noun/geolocations.txt", "noun/profane.txt",
-      "substantives/given_names.txt", "noun/kpop.txt", "noun/bible.txt",
-      "noun/pokemon.txt", "noun/congress.txt", "noun/wikipedia_title_nouns.txt"
-    )
-    map += Verb -> conjugatePredicatesToCharArraySet(readWordsAsSet("verb/verb.txt"))
-    map += Adjective -> conjugatePredicatesToCharArraySet(readWordsAsSet("adjective/adjective.txt"), isAdjective = true)
-    map += Adverb -> readWords("adverb/adverb.txt")
-    map += Determiner -> readWords("auxiliary/determiner.txt")
-    map += Exclamation -> readWords("auxiliary/exclamation.txt")
-    map += Josa -> readWords("josa/josa.txt")
-    map += Eomi -> readWords("verb/eomi.txt")
-    map += PreEomi -> readWords("verb/pre_eomi.txt")
-    map += Conjunction -> readWords("auxiliary/conjunctions.txt")
-    map += NounPrefix -> readWords("substantives/noun_prefix.txt")
-    map += VerbPrefix -> readWords("verb/verb_prefix.txt")
-    map += Suffix -> readWords("substantives/suffix.txt")
+    val map = new KoreanPosMap[CharArraySet]
+
+    dictionaryResources.foreach {
+      case (pos, _) =>
+        val start = System.currentTimeMillis()
+        map += pos -> loadDictionary(pos)
+        dictionaryLoadMillis += pos -> (System.currentTimeMillis() - start)
+    }
     map
   }
 
-  lazy val spamNouns = readWords("noun/spam.txt", "noun/profane.txt")
+  private[this] val spamNounsDictionary = new ReleasableDictionary("spamNouns",
+    () => readWords("noun/spam.txt", "noun/profane.txt"))
 
-  val properNouns: CharArraySet = readWords("noun/entities.txt",
-    "noun/names.txt", "noun/twitter.txt", "noun/lol.txt", "noun/company_names.txt",
-    "noun/foreign.txt", "noun/geolocations.txt",
-    "substantives/given_names.txt", "noun/kpop.txt", "noun/bible.txt",
-    "noun/pokemon.txt", "noun/congress.txt", "noun/wikipedia_title_nouns.txt")
+  def spamNouns: CharArraySet = spamNounsDictionary.get
+
+  private[this] val properNounsStart = System.currentTimeMillis()
 
-  lazy val nameDictionary = Map(
+  private[this] def buildProperNouns(): CharArraySet = {
+    val set = readWords("noun/entities.txt",
+      "noun/names.txt", "noun/twitter.txt", "noun/lol.txt", "noun/company_names.txt",
+      "noun/foreign.txt", "noun/geolocations.txt",
+      "substantives/given_names.txt", "noun/kpop.txt", "noun/bible.txt",
+      "noun/pokemon.txt", "noun/congress.txt", "noun/wikipedia_title_nouns.txt")
+    reloaded(Noun).foreach(set.add)
+    set
+  }
+
+  @volatile private[this] var properNounSet: CharArraySet = buildProperNouns()
+
+  def properNouns: CharArraySet = properNounSet
+
+  protected[korean] val properNounsLoadMillis = System.currentTimeMillis() - properNounsStart
+
+  private[this] val nameDictionaries = new ReleasableDictionary("nameDictionary", () => Map(
     'family_name -> readWords("substantives/family_names.txt"),
     'given_name -> readWords("substantives/given_names.txt"),
     'full_name -> readWords("noun/kpop.txt", "noun/foreign.txt", "noun/names.txt")
-  )
+  ))
 
-  lazy val typoDictionaryByLength = readWordMap("typos/typos.txt").groupBy {
-    case (key: String, value: String) => key.length
-  }
+  def nameDictionary: Map[Symbol, CharArraySet] = nameDictionaries.get
+
+  private[this] val typoDictionary = new ReleasableDictionary("typoDictionaryByLength",
+    () => readWordMap("typos/typos.txt").groupBy {
+      case (key: String, value: String) => key.length
+    })
 
-  lazy val predicateStems = {
+  def typoDictionaryByLength: Map[Int, Map[String, String]] = typoDictionary.get
+
+  private[this] val predicateStemsDictionary = new ReleasableDictionary("predicateStems", () => {
     def getConjugationMap(words: Set[String], isAdjective: Boolean): Map[String, String] = {
       words.flatMap {
         word: String => conjugatePredicated(Set(word), isAdjective).map {
@@ -161,9 +341,26 @@ object KoreanDictionaryProvider {
     }
 
     Map(
-      Verb -> getConjugationMap(readWordsAsSet("verb/verb.txt"), isAdjective = false),
-      Adjective -> getConjugationMap(readWordsAsSet("adjective/adjective.txt"), isAdjective = true)
+      Verb -> getConjugationMap(readWordsAsSet("verb/verb.txt") ++ reloaded(Verb), isAdjective = false),
+      Adjective -> getConjugationMap(readWordsAsSet("adjective/adjective.txt") ++ reloaded(Adjective),
+        isAdjective = true)
     )
-  }
+  })
+
+  def predicateStems: Map[KoreanPos, Map[String, String]] = predicateStemsDictionary.get
+
+  protected[korean] val unknownNounModelResource = "unknown_nouns.bin"
+
+  private[this] val unknownNounModelDictionary = new ReleasableDictionary("unknownNounModel",
+    () => UnknownNounModel.read(getClass.getResourceAsStream(unknownNounModelResource)))
+
+  def unknownNounModel: UnknownNounModel = unknownNounModelDictionary.get
+
+  /**
+   * Dictionaries loaded on first use, which KoreanDictionaryFootprint can release.
+   */
+  protected[korean] def optionalDictionaries: Seq[ReleasableDictionary[_ <: AnyRef]] = Seq(
+    entityFreqDictionary, spamNounsDictionary, nameDictionaries, typoDictionary, predicateStemsDictionary,
+    unknownNounModelDictionary)
 }
 
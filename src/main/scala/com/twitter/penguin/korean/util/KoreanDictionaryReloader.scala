@@ -0,0 +1,154 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.util
+
+import java.io.File
+import java.util.concurrent.{Executors, ScheduledExecutorService, ThreadFactory, TimeUnit}
+import java.util.logging.{Level, Logger}
+
+import com.twitter.penguin.korean.util.KoreanDictionaryReloader._
+import com.twitter.penguin.korean.util.KoreanPos.KoreanPos
+
+import scala.io.Source
+
+object KoreanDictionaryReloader {
+  private val LOG = Logger.getLogger(classOf[KoreanDictionaryReloader].getSimpleName)
+
+  /**
+   * Result of rebuilding one dictionary.
+   *
+   * @param pos the rebuilt POS
+   * @param file the user dictionary file, which may have been deleted
+   * @param words number of words read from the file
+   * @param entries size of the rebuilt dictionary, including bundled words and conjugations
+   * @param millis time spent rebuilding
+   */
+  case class ReloadReport(pos: KoreanPos, file: File, words: Int, entries: Int, millis: Long)
+
+  def logReport(report: ReloadReport): Unit = {
+    LOG.info("Reloaded %s from %s: %d words, %d entries in %d ms".format(
+      report.pos, report.file, report.words, report.entries, report.millis))
+  }
+}
+
+/**
+ * Watches a directory of user dictionaries and rebuilds the matching dictionaries of
+ * KoreanDictionaryProvider when its files change.
+ *
+ * A file named after a POS (Noun.txt, Verb.txt, Adjective.txt, Josa.txt, ...; case-insensitive)
+ * holds one word per line, added to the bundled words of that POS. The directory is polled every
+ * pollMillis on a background thread, which rebuilds each changed dictionary and swaps it in with
+ * KoreanDictionaryProvider.reloadDictionary, so tokenization never waits for a reload. The
+ * stems of reloaded verbs and adjectives and the proper nouns are rebuilt with them.
+ * Deleting a file restores the bundled dictionary. Words added at runtime with
+ * addWordsToDictionary are kept, and a memory-mapped dictionary stays mapped.
+ *
+ * @param directory user dictionary directory
+ * @param pollMillis polling interval
+ * @param onReload called on the reloading thread after each dictionary is swapped in
+ */
+class KoreanDictionaryReloader(val directory: File,
+    pollMillis: Long = 1000,
+    onReload: ReloadReport => Unit = logReport) {
+  require(directory.isDirectory, "Not a directory: " + directory)
+
+  private[this] val dictionaryFiles: Map[String, KoreanPos] =
+    KoreanDictionaryProvider.koreanDictionary.keys.map(pos => pos.toString.toLowerCase + ".txt" -> pos).toMap
+
+  // Last seen (lastModified, length) per watched file; absent files are not tracked.
+  private[this] var seen = Map[String, (Long, Long)]()
+
+  private[this] var executor: ScheduledExecutorService = _
+
+  /**
+   * Reload every dictionary whose file was added, changed or removed since the last check.
+   *
+   * @return reports of the reloaded dictionaries
+   */
+  def reloadChanged(): Seq[ReloadReport] = synchronized {
+    val current: Map[String, (Long, Long)] = Option(directory.listFiles).getOrElse(Array[File]())
+        .filter(f => f.isFile && dictionaryFiles.contains(f.getName.toLowerCase))
+        .map(f => f.getName.toLowerCase ->(f.lastModified, f.length)).toMap
+
+    val changed = (current.keySet ++ seen.keySet).filter(name => current.get(name) != seen.get(name))
+    val reports = changed.toSeq.sorted.flatMap { name =>
+      try {
+        val report = reload(name)
+        seen = current.get(name).map(stamp => seen + (name -> stamp)).getOrElse(seen - name)
+        Some(report)
+      } catch {
+        // Keep the old dictionary and the old stamp so the file is retried on the next poll.
+        case e: Exception =>
+          LOG.log(Level.WARNING, "Failed to reload " + name, e)
+          None
+      }
+    }
+    reports.foreach(onReload)
+    reports
+  }
+
+  private[this] def reload(name: String): ReloadReport = {
+    val pos = dictionaryFiles(name)
+    val file = Option(directory.listFiles).getOrElse(Array[File]())
+        .find(_.getName.toLowerCase == name).getOrElse(new File(directory, name))
+
+    val start = System.nanoTime()
+    val words: Seq[String] = if (file.isFile) {
+      val source = Source.fromFile(file)(io.Codec("UTF-8"))
+      try {
+        source.getLines().map(_.trim).filter(_.length > 0).toVector
+      } finally {
+        source.close()
+      }
+    } else {
+      Seq()
+    }
+    val dictionary = KoreanDictionaryProvider.reloadDictionary(pos, words)
+    ReloadReport(pos, file, words.size, dictionary.size,
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+  }
+
+  /**
+   * Load the directory once and start polling it on a daemon thread.
+   *
+   * @return reports of the initial load
+   */
+  def start(): Seq[ReloadReport] = synchronized {
+    require(executor == null, "Already started")
+    val initial = reloadChanged()
+    executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory {
+      override def newThread(r: Runnable): Thread = {
+        val thread = new Thread(r, "korean-dictionary-reloader")
+        thread.setDaemon(true)
+        thread
+      }
+    })
+    executor.scheduleWithFixedDelay(new Runnable {
+      override def run(): Unit = reloadChanged()
+    }, pollMillis, pollMillis, TimeUnit.MILLISECONDS)
+    initial
+  }
+
+  def stop(): Unit = synchronized {
+    if (executor != null) {
+      executor.shutdownNow()
+      executor = null
+    }
+  }
+}
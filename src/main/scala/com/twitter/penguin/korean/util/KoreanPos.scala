@@ -74,6 +74,34 @@ object KoreanPos extends Enumeration {
 
   ProperNoun = Value
 
+  require(maxId <= 64, "KoreanPosSet holds at most 64 POS")
+
+  /**
+   * A set of POS as a bitmask over POS ids, for membership tests in scoring and stemming
+   * loops. contains is a shift and an AND, with no hashing or boxing.
+   */
+  final class KoreanPosSet(val mask: Long) extends AnyVal {
+    def contains(pos: KoreanPos): Boolean = (mask & (1L << pos.id)) != 0L
+
+    def +(pos: KoreanPos): KoreanPosSet = new KoreanPosSet(mask | (1L << pos.id))
+
+    def ++(that: KoreanPosSet): KoreanPosSet = new KoreanPosSet(mask | that.mask)
+
+    def isEmpty: Boolean = mask == 0L
+
+    def size: Int = java.lang.Long.bitCount(mask)
+
+    def toSet: Set[KoreanPos] = values.filter(contains)
+
+    override def toString: String = toSet.mkString("KoreanPosSet(", ", ", ")")
+  }
+
+  object KoreanPosSet {
+    val empty = new KoreanPosSet(0L)
+
+    def apply(poses: KoreanPos*): KoreanPosSet = poses.foldLeft(empty)(_ + _)
+  }
+
   val OtherPoses = Set(Korean, Foreign, Number, KoreanParticle, Alpha,
     Punctuation, Hashtag, ScreenName,
     Email, URL, CashTag)
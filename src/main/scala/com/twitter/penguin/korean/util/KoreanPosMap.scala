@@ -0,0 +1,71 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.util
+
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+import com.twitter.penguin.korean.util.KoreanPos.KoreanPos
+
+import scala.collection.mutable
+
+/**
+ * A mutable map from KoreanPos to values, stored in an array indexed by POS id.
+ *
+ * apply reads one array slot instead of hashing the key. Iteration follows POS id order.
+ * Entries are published through an AtomicReferenceArray, so concurrent readers see either
+ * the old or the new value of a replaced entry.
+ */
+class KoreanPosMap[V <: AnyRef] extends mutable.AbstractMap[KoreanPos, V] {
+  private[this] val table = new AtomicReferenceArray[V](KoreanPos.maxId)
+
+  override def apply(pos: KoreanPos): V = {
+    val value = table.get(pos.id)
+    if (value == null) default(pos) else value
+  }
+
+  override def get(pos: KoreanPos): Option[V] = Option(table.get(pos.id))
+
+  override def contains(pos: KoreanPos): Boolean = table.get(pos.id) != null
+
+  override def put(pos: KoreanPos, value: V): Option[V] = Option(table.getAndSet(pos.id, value))
+
+  override def +=(kv: (KoreanPos, V)): this.type = {
+    table.set(kv._1.id, kv._2)
+    this
+  }
+
+  override def -=(pos: KoreanPos): this.type = {
+    table.set(pos.id, null.asInstanceOf[V])
+    this
+  }
+
+  override def iterator: Iterator[(KoreanPos, V)] =
+    KoreanPos.values.iterator.flatMap(pos => get(pos).map(pos -> _))
+
+  override def foreach[U](f: ((KoreanPos, V)) => U): Unit = {
+    var id = 0
+    while (id < KoreanPos.maxId) {
+      val value = table.get(id)
+      if (value != null) f(KoreanPos(id) -> value)
+      id += 1
+    }
+  }
+
+  override def empty: KoreanPosMap[V] = new KoreanPosMap[V]
+}
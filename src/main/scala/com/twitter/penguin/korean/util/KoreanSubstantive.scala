@@ -94,6 +94,110 @@ object KoreanSubstantive {
     Seq(recovered, recovered.init).exists(isName)
   }
 
+  private def isName(chars: Array[Char], off: Int, len: Int): Boolean = {
+    if (nameDictionary('full_name).contains(chars, off, len) ||
+        nameDictionary('given_name).contains(chars, off, len)) return true
+
+    len match {
+      case 3 => nameDictionary('family_name).contains(chars, off, 1) &&
+          nameDictionary('given_name).contains(chars, off + 1, 2)
+      case 4 => nameDictionary('family_name).contains(chars, off, 2) &&
+          nameDictionary('given_name).contains(chars, off + 2, 2)
+      case _ => false
+    }
+  }
+
+  /**
+   * Character features of one chunk, computed once so that isName, isKoreanNumber and
+   * isKoreanNameVariation of any substring chunk[start, end) cost a few array reads.
+   * Name results of substrings up to maxLength chars are memoized. Not thread-safe; create
+   * one per chunk parse.
+   *
+   * @param chunk input chunk
+   * @param maxLength longest substring whose results are memoized
+   */
+  protected[korean] class ChunkFeatures(chunk: CharSequence, maxLength: Int) {
+    private[this] val chars: Array[Char] = chunk.toString.toCharArray
+    private[this] val n = chars.length
+
+    // Length of the run of NUMBER_CHARS starting at each position.
+    private[this] val numberRun: Array[Int] = {
+      val run = new Array[Int](n + 1)
+      var i = n - 1
+      while (i >= 0) {
+        run(i) = if (NUMBER_CHARS.contains(chars(i).toInt)) run(i + 1) + 1 else 0
+        i -= 1
+      }
+      run
+    }
+    private[this] val numberLast: Array[Boolean] = chars.map(c => NUMBER_LAST_CHARS.contains(c.toInt))
+
+    // Decomposed Hangul syllables, null for other characters.
+    private[this] val decomposed: Array[HangulChar] =
+      chars.map(c => if (c >= '가' && c <= '힣') decomposeHangul(c) else null)
+
+    // Memoized results: 0 not computed, 1 false, 2 true
+    private[this] val names = new Array[Byte](n * (maxLength + 1))
+    private[this] val nameVariations = new Array[Byte](n * (maxLength + 1))
+
+    private[this] def memoized(memo: Array[Byte], start: Int, end: Int)(f: => Boolean): Boolean = {
+      if (end - start > maxLength) return f
+      val i = start * (maxLength + 1) + end - start
+      if (memo(i) == 0) memo(i) = if (f) 2 else 1
+      memo(i) == 2
+    }
+
+    def isName(start: Int, end: Int): Boolean =
+      memoized(names, start, end)(KoreanSubstantive.isName(chars, start, end - start))
+
+    def isKoreanNumber(start: Int, end: Int): Boolean =
+      end <= start || (numberRun(start) >= end - start - 1 && numberLast(end - 1))
+
+    def isKoreanNameVariation(start: Int, end: Int): Boolean =
+      memoized(nameVariations, start, end)(computeNameVariation(start, end))
+
+    // Number of syllable pairs before each position that are rare inside nouns
+    private[this] lazy val implausiblePairs: Array[Int] = {
+      val counts = new Array[Int](n)
+      (1 until n).foreach { i =>
+        counts(i) = counts(i - 1) +
+            (if (unknownNounModel.pairCount(chars(i - 1), chars(i)) < UnknownNounModel.DefaultMinCount) 1 else 0)
+      }
+      counts
+    }
+
+    /**
+     * True if chunk[start, end) is plausible as an unknown noun (see UnknownNounModel).
+     */
+    def isPlausibleUnknownNoun(start: Int, end: Int): Boolean = {
+      val model = unknownNounModel
+      implausiblePairs(end - 1) == implausiblePairs(start) &&
+          model.startCount(chars(start)) >= UnknownNounModel.DefaultMinCount &&
+          model.endCount(chars(end - 1)) >= UnknownNounModel.DefaultMinCount
+    }
+
+    private[this] def computeNameVariation(start: Int, end: Int): Boolean = {
+      if (isName(start, end)) return true
+      val len = end - start
+      if (len < 3 || len > 5) return false
+      if ((start until end).exists(decomposed(_) == null)) {
+        return KoreanSubstantive.isKoreanNameVariation(new String(chars, start, len))
+      }
+
+      val lastChar = decomposed(end - 1)
+      if (!Hangul.CODA_MAP.contains(lastChar.onset)) return false
+      if (lastChar.onset == 'ㅇ' || lastChar.vowel != 'ㅣ' || lastChar.coda != ' ') return false
+      val prevChar = decomposed(end - 2)
+      if (prevChar.coda != ' ') return false
+
+      // Recover missing 'ㅇ' (우혀니 -> 우현, 우현이, 빠순이 -> 빠순, 빠순이)
+      val recovered = java.util.Arrays.copyOfRange(chars, start, end)
+      recovered(len - 2) = composeHangul(prevChar.onset, prevChar.vowel, lastChar.onset)
+      recovered(len - 1) = '이'
+      KoreanSubstantive.isName(recovered, 0, len) || KoreanSubstantive.isName(recovered, 0, len - 1)
+    }
+  }
+
   /**
    * Collapse all the one-char nouns into one unknown noun
    *
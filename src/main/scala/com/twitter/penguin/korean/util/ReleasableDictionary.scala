@@ -0,0 +1,76 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.util
+
+/**
+ * A dictionary loaded on first use, like a lazy val, that can be released and is then loaded
+ * again on next use. Readers holding the released value keep a consistent copy.
+ *
+ * @param name name reported by KoreanDictionaryFootprint
+ * @param load builds the dictionary
+ */
+protected[korean] class ReleasableDictionary[T <: AnyRef](val name: String, load: () => T) {
+  @volatile private[this] var value: T = _
+  @volatile private[this] var millis = 0L
+
+  def get: T = {
+    val loaded = value
+    if (loaded != null) loaded else synchronized {
+      if (value == null) {
+        val start = System.currentTimeMillis()
+        value = load()
+        millis = System.currentTimeMillis() - start
+      }
+      value
+    }
+  }
+
+  /**
+   * The dictionary if it is loaded, without loading it.
+   */
+  def current: Option[T] = Option(value)
+
+  def initialized: Boolean = value != null
+
+  /**
+   * Time the last load took, 0 if never loaded.
+   */
+  def loadMillis: Long = millis
+
+  /**
+   * Rebuild the dictionary if it is loaded and swap it in; readers see the old one until then.
+   * An unloaded dictionary is built by the next get.
+   */
+  def reload(): Unit = synchronized {
+    if (value != null) {
+      val start = System.currentTimeMillis()
+      value = load()
+      millis = System.currentTimeMillis() - start
+    }
+  }
+
+  /**
+   * @return true if the dictionary was loaded
+   */
+  def release(): Boolean = synchronized {
+    val loaded = value != null
+    value = null.asInstanceOf[T]
+    loaded
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.util
+
+import java.io._
+
+import com.twitter.penguin.korean.util.UnknownNounModel._
+
+object UnknownNounModel {
+  private val Magic = 0x4B554E4D
+  private val Version = 1
+  private val FirstSyllable = '가'
+  private val Syllables = '힣' - '가' + 1
+
+  /**
+   * Bigrams seen fewer times than this inside nouns make a span implausible.
+   */
+  val DefaultMinCount = 2
+
+  private def syllable(c: Char): Int = if (c >= FirstSyllable && c < FirstSyllable + Syllables) c - FirstSyllable else -1
+
+  private def saturate(count: Int): Byte = math.min(count, 255).toByte
+
+  /**
+   * Count the first and last syllables and the adjacent syllable pairs of nouns.
+   * Nouns with characters other than Hangul syllables are skipped.
+   */
+  def build(nouns: Iterator[String]): UnknownNounModel = {
+    val starts = new Array[Int](Syllables)
+    val ends = new Array[Int](Syllables)
+    val bigrams = new java.util.HashMap[Integer, Integer]
+    nouns.foreach { noun =>
+      val codes = noun.map(syllable)
+      if (codes.nonEmpty && codes.forall(_ >= 0)) {
+        starts(codes.head) += 1
+        ends(codes.last) += 1
+        codes.sliding(2).filter(_.size == 2).foreach { case Seq(a, b) =>
+          val code = a * Syllables + b
+          val count = bigrams.get(code)
+          bigrams.put(code, if (count == null) 1 else count + 1)
+        }
+      }
+    }
+    val codes = bigrams.keySet.toArray(new Array[Integer](0)).map(_.intValue).sorted
+    new UnknownNounModel(starts.map(saturate), ends.map(saturate), codes,
+      codes.map(code => saturate(bigrams.get(code))))
+  }
+
+  /**
+   * Read a model written by UnknownNounModel.write.
+   */
+  def read(stream: InputStream): UnknownNounModel = {
+    val in = new DataInputStream(new BufferedInputStream(stream, 1 << 16))
+    try {
+      if (in.readInt() != Magic || in.readInt() != Version) {
+        throw new IllegalArgumentException("Not an unknown noun model")
+      }
+      val starts = new Array[Byte](Syllables)
+      val ends = new Array[Byte](Syllables)
+      in.readFully(starts)
+      in.readFully(ends)
+      val codes = new Array[Int](in.readInt())
+      var previous = 0
+      codes.indices.foreach { i =>
+        previous += readVarInt(in)
+        codes(i) = previous
+      }
+      val counts = new Array[Byte](codes.length)
+      in.readFully(counts)
+      new UnknownNounModel(starts, ends, codes, counts)
+    } finally {
+      in.close()
+    }
+  }
+
+  private def readVarInt(in: DataInput): Int = {
+    var value = 0
+    var shift = 0
+    var b = in.readByte()
+    while (b < 0) {
+      value |= (b & 0x7f) << shift
+      shift += 7
+      b = in.readByte()
+    }
+    value | (b << shift)
+  }
+
+  private def writeVarInt(out: DataOutput, value: Int): Unit = {
+    var v = value
+    while ((v & ~0x7f) != 0) {
+      out.writeByte((v & 0x7f) | 0x80)
+      v >>>= 7
+    }
+    out.writeByte(v)
+  }
+}
+
+/**
+ * Character statistics of known nouns, used to gate unknown noun candidates in the tokenizer
+ * (TokenizerProfile.unknownNounGate). A span is a plausible unknown noun if its first and last
+ * syllables start and end nouns and every adjacent pair of its syllables occurs inside nouns,
+ * each at least minCount times.
+ *
+ * Counts saturate at 255. The bundled model (KoreanDictionaryProvider.unknownNounModel) is built
+ * from the noun dictionaries and entity-freq.txt.gz by tools.CreateUnknownNounModel and stored
+ * as delta-coded sorted syllable pairs.
+ *
+ * @param starts count of nouns starting with each syllable
+ * @param ends count of nouns ending with each syllable
+ * @param bigrams sorted syllable pair codes, first * 11172 + second
+ * @param bigramCounts count of each pair in bigrams
+ */
+class UnknownNounModel(starts: Array[Byte], ends: Array[Byte], bigrams: Array[Int], bigramCounts: Array[Byte]) {
+
+  private[this] def count(b: Byte): Int = b & 0xff
+
+  def bigramCount: Int = bigrams.length
+
+  def startCount(c: Char): Int = { val s = syllable(c); if (s < 0) 0 else count(starts(s)) }
+
+  def endCount(c: Char): Int = { val s = syllable(c); if (s < 0) 0 else count(ends(s)) }
+
+  def pairCount(first: Char, second: Char): Int = {
+    val a = syllable(first)
+    val b = syllable(second)
+    if (a < 0 || b < 0) return 0
+    val i = java.util.Arrays.binarySearch(bigrams, a * Syllables + b)
+    if (i < 0) 0 else count(bigramCounts(i))
+  }
+
+  def isPlausible(word: CharSequence, minCount: Int = DefaultMinCount): Boolean = {
+    word.length > 0 && startCount(word.charAt(0)) >= minCount &&
+        endCount(word.charAt(word.length - 1)) >= minCount &&
+        (1 until word.length).forall(i => pairCount(word.charAt(i - 1), word.charAt(i)) >= minCount)
+  }
+
+  def estimatedBytes: Long = CharArrayMap.arrayBytes(1, starts.length) * 2 +
+      CharArrayMap.arrayBytes(4, bigrams.length) + CharArrayMap.arrayBytes(1, bigramCounts.length)
+
+  def write(file: File): Unit = {
+    val out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))
+    try {
+      out.writeInt(Magic)
+      out.writeInt(Version)
+      out.write(starts)
+      out.write(ends)
+      out.writeInt(bigrams.length)
+      var previous = 0
+      bigrams.foreach { code =>
+        writeVarInt(out, code - previous)
+        previous = code
+      }
+      out.write(bigramCounts)
+    } finally {
+      out.close()
+    }
+  }
+}
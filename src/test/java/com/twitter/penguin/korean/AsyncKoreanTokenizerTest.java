@@ -0,0 +1,263 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import scala.collection.Seq;
+
+import org.junit.Test;
+
+import com.twitter.penguin.korean.tokenizer.KoreanTokenizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncKoreanTokenizerTest {
+  private static final String[] TEXTS = {
+      "착한강아지상을 받은 루루", "아름다운 강산을 귀여워서 먹었다.", "루루",
+      "삼겹살 바베큐는 뼈가 너무많다. 생된장이 예술이다.", "그리고", "안녕ㅋㅋ"
+  };
+
+  @Test
+  public void testTokenize() throws Exception {
+    AsyncKoreanTokenizer async = new AsyncKoreanTokenizer(Executors.newFixedThreadPool(2), 100, 8, 4);
+    List<CompletableFuture<Seq<KoreanTokenizer.KoreanToken>>> futures = new ArrayList<>();
+    for (String text : TEXTS) {
+      futures.add(async.tokenize(text));
+    }
+    for (int i = 0; i < TEXTS.length; i++) {
+      assertEquals(TwitterKoreanProcessorJava.tokenize(TEXTS[i]), futures.get(i).get(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testRejectsBeyondMaxInFlight() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    ExecutorService blocked = Executors.newSingleThreadExecutor();
+    AsyncKoreanTokenizer async = new AsyncKoreanTokenizer(command -> blocked.execute(() -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      command.run();
+    }), 1, 0, 1);
+
+    CompletableFuture<Seq<KoreanTokenizer.KoreanToken>> first = async.tokenize("루루");
+    try {
+      async.tokenize("루루").get();
+      fail("Expected a rejection");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+    release.countDown();
+    assertEquals(TwitterKoreanProcessorJava.tokenize("루루"), first.get(10, TimeUnit.SECONDS));
+    blocked.shutdown();
+  }
+
+  @Test
+  public void testProcessorKeepsOrderAndDemand() throws Exception {
+    AsyncKoreanTokenizer async = new AsyncKoreanTokenizer(Executors.newFixedThreadPool(3), 100, 8, 2);
+    AsyncKoreanTokenizer.TokenizingProcessor processor = async.newProcessor();
+
+    final long[] requestedFromUpstream = {0};
+    processor.onSubscribe(new TokenizerFlow.Subscription() {
+      private int next = 0;
+
+      @Override
+      public void request(long n) {
+        synchronized (this) {
+          requestedFromUpstream[0] += n;
+          for (long i = 0; i < n && next < TEXTS.length; i++) {
+            processor.onNext(TEXTS[next++]);
+          }
+          if (next == TEXTS.length) {
+            processor.onComplete();
+          }
+        }
+      }
+
+      @Override
+      public void cancel() {
+      }
+    });
+
+    final List<Seq<KoreanTokenizer.KoreanToken>> received = new ArrayList<>();
+    final CountDownLatch done = new CountDownLatch(1);
+    processor.subscribe(new TokenizerFlow.Subscriber<Seq<KoreanTokenizer.KoreanToken>>() {
+      private TokenizerFlow.Subscription subscription;
+
+      @Override
+      public void onSubscribe(TokenizerFlow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+      }
+
+      @Override
+      public void onNext(Seq<KoreanTokenizer.KoreanToken> item) {
+        received.add(item);
+        subscription.request(1);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        done.countDown();
+      }
+
+      @Override
+      public void onComplete() {
+        done.countDown();
+      }
+    });
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertEquals(TEXTS.length, received.size());
+    for (int i = 0; i < TEXTS.length; i++) {
+      assertEquals(TwitterKoreanProcessorJava.tokenize(TEXTS[i]), received.get(i));
+    }
+    assertTrue(requestedFromUpstream[0] <= TEXTS.length + 1);
+  }
+
+  @Test
+  public void testSmallTextsRunOnSeveralThreads() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    // Each batch waits until a second one runs, so a single batch runner would time out.
+    final CountDownLatch bothRunning = new CountDownLatch(2);
+    final AtomicBoolean overlapped = new AtomicBoolean();
+    AsyncKoreanTokenizer async = new AsyncKoreanTokenizer(command -> pool.execute(() -> {
+      bothRunning.countDown();
+      try {
+        if (bothRunning.await(10, TimeUnit.SECONDS)) {
+          overlapped.set(true);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      command.run();
+    }), 100, 64, 2, 4);
+
+    List<CompletableFuture<Seq<KoreanTokenizer.KoreanToken>>> futures = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      futures.add(async.tokenize(TEXTS[i % TEXTS.length]));
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      assertEquals(TwitterKoreanProcessorJava.tokenize(TEXTS[i % TEXTS.length]),
+          futures.get(i).get(20, TimeUnit.SECONDS));
+    }
+    assertTrue(overlapped.get());
+    pool.shutdown();
+  }
+
+  @Test
+  public void testRejectedBatchFailsQueuedTexts() throws Exception {
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    final boolean[] reject = {true};
+    AsyncKoreanTokenizer async = new AsyncKoreanTokenizer(command -> {
+      if (reject[0]) {
+        throw new RejectedExecutionException("Shutting down");
+      }
+      pool.execute(command);
+    }, 1, 8, 4);
+
+    try {
+      async.tokenize("루루").get(10, TimeUnit.SECONDS);
+      fail("Expected a rejection");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+    try {
+      async.tokenize("삼겹살 바베큐는 뼈가 너무많다.").get(10, TimeUnit.SECONDS);
+      fail("Expected a rejection");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    // The permits are back and the next small text schedules a new batch.
+    reject[0] = false;
+    assertEquals(TwitterKoreanProcessorJava.tokenize("루루"), async.tokenize("루루").get(10, TimeUnit.SECONDS));
+    pool.shutdown();
+  }
+
+  @Test
+  public void testNonPositiveRequestCancelsUpstream() throws Exception {
+    // Nothing is ever tokenized, so only the invalid request can end the stream.
+    AsyncKoreanTokenizer async = new AsyncKoreanTokenizer(command -> { }, 100, 8, 2);
+    AsyncKoreanTokenizer.TokenizingProcessor processor = async.newProcessor();
+
+    final boolean[] cancelled = {false};
+    processor.onSubscribe(new TokenizerFlow.Subscription() {
+      @Override
+      public void request(long n) {
+        for (long i = 0; i < n; i++) {
+          processor.onNext(TEXTS[0]);
+        }
+      }
+
+      @Override
+      public void cancel() {
+        cancelled[0] = true;
+      }
+    });
+
+    final List<Throwable> errors = new ArrayList<>();
+    final TokenizerFlow.Subscription[] downstream = new TokenizerFlow.Subscription[1];
+    processor.subscribe(new TokenizerFlow.Subscriber<Seq<KoreanTokenizer.KoreanToken>>() {
+      @Override
+      public void onSubscribe(TokenizerFlow.Subscription subscription) {
+        downstream[0] = subscription;
+      }
+
+      @Override
+      public void onNext(Seq<KoreanTokenizer.KoreanToken> item) {
+        fail("Nothing was tokenized");
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        errors.add(throwable);
+      }
+
+      @Override
+      public void onComplete() {
+        fail("The stream did not complete");
+      }
+    });
+
+    downstream[0].request(2);
+    assertTrue(!cancelled[0] && errors.isEmpty());
+    downstream[0].request(0);
+    assertTrue(cancelled[0]);
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0) instanceof IllegalArgumentException);
+
+    downstream[0].request(-1);
+    assertEquals(1, errors.size());
+  }
+}
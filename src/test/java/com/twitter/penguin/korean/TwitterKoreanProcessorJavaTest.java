@@ -28,6 +28,7 @@ import org.junit.Test;
 
 import com.twitter.penguin.korean.tokenizer.KoreanTokenizer;
 import com.twitter.penguin.korean.tokenizer.Sentence;
+import com.twitter.penguin.korean.util.KoreanPos;
 
 import static org.junit.Assert.assertEquals;
 
@@ -152,4 +153,43 @@ public class TwitterKoreanProcessorJavaTest {
         TwitterKoreanProcessorJava.detokenize(words)
     );
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testKoreanPosJavaIds() {
+    scala.collection.Iterator<scala.Enumeration.Value> poses = KoreanPos.values().iterator();
+    while (poses.hasNext()) {
+      scala.Enumeration.Value pos = poses.next();
+      assertEquals(pos.toString(), KoreanPosJava.fromId(pos.id()).name());
+    }
+    assertEquals(KoreanPos.values().size(), KoreanPosJava.values().length);
+  }
+
+  @Test
+  public void testTokenizeIntoBuffer() {
+    KoreanTokenBuffer buffer = new KoreanTokenBuffer();
+    TwitterKoreanProcessorJava.tokenize("착한강아지상을 받은 루루", buffer, false);
+    assertEquals(
+        "[착한(Adjective: 0, 2), 강아지(Noun: 2, 3), 상(Suffix: 5, 1), 을(Josa: 6, 1), " +
+            "받은(Verb: 8, 2), 루루(Noun: 11, 2)]",
+        buffer.toString()
+    );
+    assertEquals(KoreanPosJava.Noun, buffer.getPos(1));
+
+    TwitterKoreanProcessorJava.tokenize("루루", buffer, true);
+    assertEquals(1, buffer.size());
+    assertEquals("루루", buffer.getText(0));
+  }
+
+  @Test
+  public void testTokensIntoCallerCollections() {
+    Seq<KoreanTokenizer.KoreanToken> tokens = TwitterKoreanProcessorJava.tokenize("착한강아지상을 받은 루루");
+    List<String> strings = new ArrayList<>();
+    strings.add("첫");
+    TwitterKoreanProcessorJava.tokensToJavaStringList(tokens, false, strings);
+    assertEquals("[첫, 착한, 강아지, 상, 을, 받은, 루루]", strings.toString());
+
+    List<KoreanTokenJava> javaTokens = TwitterKoreanProcessorJava.tokensToJavaKoreanTokenList(
+        tokens, true, new ArrayList<KoreanTokenJava>());
+    assertEquals(8, javaTokens.size());
+  }
+}
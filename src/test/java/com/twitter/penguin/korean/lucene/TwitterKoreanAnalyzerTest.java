@@ -0,0 +1,151 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.penguin.korean.lucene;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.junit.Test;
+
+import com.twitter.penguin.korean.KoreanPosJava;
+import com.twitter.penguin.korean.KoreanTokenJava;
+import com.twitter.penguin.korean.TwitterKoreanProcessorJava;
+import com.twitter.penguin.korean.tokenizer.TokenizerProfile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TwitterKoreanAnalyzerTest {
+  private static List<String> analyze(Analyzer analyzer, String text) throws IOException {
+    List<String> output = new ArrayList<>();
+    try (TokenStream stream = analyzer.tokenStream("text", text)) {
+      CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+      OffsetAttribute offset = stream.addAttribute(OffsetAttribute.class);
+      TypeAttribute type = stream.addAttribute(TypeAttribute.class);
+      stream.reset();
+      while (stream.incrementToken()) {
+        output.add(term + "/" + type.type() + "/" + text.substring(offset.startOffset(), offset.endOffset()));
+      }
+      stream.end();
+      assertEquals(text.length(), offset.endOffset());
+    }
+    return output;
+  }
+
+  // term/type/start-end@position of each token, then the final position after end()
+  private static List<String> positions(Tokenizer source, String text) throws IOException {
+    return positions(source, source, text);
+  }
+
+  private static List<String> positions(Tokenizer source, TokenStream stream, String text) throws IOException {
+    List<String> output = new ArrayList<>();
+    source.setReader(new StringReader(text));
+    try {
+      CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+      OffsetAttribute offset = stream.addAttribute(OffsetAttribute.class);
+      TypeAttribute type = stream.addAttribute(TypeAttribute.class);
+      PositionIncrementAttribute posInc = stream.addAttribute(PositionIncrementAttribute.class);
+      stream.reset();
+      int position = -1;
+      while (stream.incrementToken()) {
+        position += posInc.getPositionIncrement();
+        output.add(term + "/" + type.type() + "/" + offset.startOffset() + "-" + offset.endOffset()
+            + "@" + position);
+      }
+      stream.end();
+      output.add("end@" + (position + posInc.getPositionIncrement()));
+    } finally {
+      stream.close();
+    }
+    return output;
+  }
+
+  @Test
+  public void testTokenizerOffsetsPointIntoOriginalText() throws IOException {
+    Analyzer analyzer = new TwitterKoreanAnalyzer(true, false, Collections.<KoreanPosJava>emptySet());
+    assertEquals(
+        "[안/VerbPrefix/안, 돼/Verb/됔ㅋㅋㅋ, ㅋㅋ/KoreanParticle/ㅋㅋ, 소리/Noun/소린, 인가/Josa/가]",
+        analyze(analyzer, "안됔ㅋㅋㅋㅋㅋ 소린가").toString());
+  }
+
+  @Test
+  public void testStemAndPosFilters() throws IOException {
+    Analyzer analyzer = new TwitterKoreanAnalyzer();
+    String text = "새로운 스마트폰을 샀어요! 정말 좋아하는데요";
+
+    List<String> expected = new ArrayList<>();
+    for (KoreanTokenJava token : TwitterKoreanProcessorJava.tokensToJavaKoreanTokenList(
+        TwitterKoreanProcessorJava.stem(TwitterKoreanProcessorJava.tokenize(
+            TwitterKoreanProcessorJava.normalize(text))))) {
+      if (!TwitterKoreanAnalyzer.DEFAULT_REMOVED_POS.contains(token.getPos())) {
+        expected.add(token.getText() + "/" + token.getPos() + "/"
+            + text.substring(token.getOffset(), token.getOffset() + token.getLength()));
+      }
+    }
+    assertEquals(expected, analyze(analyzer, text));
+    assertEquals("사다/Verb/샀어요", expected.get(2));
+    // The reused components give the same result for the next document.
+    assertEquals(expected, analyze(analyzer, text));
+  }
+
+  @Test
+  public void testStemmingPositions() throws IOException {
+    String[] texts = {
+        "새로운 스마트폰을 샀어요! 정말 좋아하는데요", "착한강아지상을 받은 루루", "안됔ㅋㅋㅋㅋㅋ 소린가",
+        "삼겹살 바베큐는 뼈가 너무많다. 생된장이 예술이다."
+    };
+    for (String text : texts) {
+      Tokenizer fused = new TwitterKoreanTokenizer(true, true, TokenizerProfile.defaultProfile());
+      Tokenizer source = new TwitterKoreanTokenizer(true, TokenizerProfile.defaultProfile());
+      List<String> expected = positions(fused, text);
+      // Merged endings take no position of their own.
+      for (int i = 0; i < expected.size() - 1; i++) {
+        assertTrue(expected.get(i), expected.get(i).endsWith("@" + i));
+      }
+      assertEquals(text, expected, positions(source, new KoreanStemFilter(source), text));
+    }
+    assertEquals("[새롭다/Adjective/0-3@0, 스마트폰/ProperNoun/4-8@1, 을/Josa/8-9@2, 사다/Verb/10-13@3, "
+        + "!/Punctuation/13-14@4, 정말/Noun/15-17@5, 좋아하다/Adjective/18-24@6, end@6]",
+        positions(new TwitterKoreanTokenizer(true, true, TokenizerProfile.defaultProfile()), texts[0]).toString());
+  }
+
+  @Test
+  public void testStemFilterKeepsUpstreamPositionGaps() throws IOException {
+    String text = "스마트폰을 샀어요 정말 좋아하는데요";
+    Tokenizer source = new TwitterKoreanTokenizer(true, TokenizerProfile.defaultProfile());
+    assertEquals("[스마트폰/ProperNoun/0-4@0, 샀/Verb/6-7@2, 어요/Eomi/7-9@3, 정말/Noun/10-12@4, "
+        + "좋아하는/Adjective/13-17@5, 데요/Eomi/17-19@6, end@6]",
+        positions(source, new KoreanPosFilter(source, EnumSet.of(KoreanPosJava.Josa)), text).toString());
+
+    source = new TwitterKoreanTokenizer(true, TokenizerProfile.defaultProfile());
+    TokenStream stemmed = new KoreanStemFilter(new KoreanPosFilter(source, EnumSet.of(KoreanPosJava.Josa)));
+    assertEquals("[스마트폰/ProperNoun/0-4@0, 사다/Verb/6-9@2, 정말/Noun/10-12@3, "
+        + "좋아하다/Adjective/13-19@4, end@4]", positions(source, stemmed, text).toString());
+  }
+}
@@ -148,6 +148,14 @@ class TwitterKoreanProcessorTest extends TestBase {
     )
   }
 
+  test("normalizeAndTokenize should return tokens aligned to the original text") {
+    val text = "안됔ㅋㅋㅋㅋㅋ 저건 소린가 #해쉬태그"
+    val aligned = normalizeAndTokenize(text)
+    assert(aligned.map(_.token) === tokenize(normalize(text)))
+    assert(aligned.map(t => text.substring(t.originalOffset, t.originalOffset + t.originalLength)) ===
+        Seq("안", "됔ㅋㅋㅋ", "ㅋㅋ", " ", "저건", " ", "소린", "가", " ", "#해쉬태그"))
+  }
+
   test("stem should correctly stem the tokenized words") {
     val tokens = tokenize("게으른 아침이 밝았구나.")
 
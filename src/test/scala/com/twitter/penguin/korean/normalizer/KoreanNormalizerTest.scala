@@ -92,4 +92,25 @@ class KoreanNormalizerTest extends TestBase {
     assert(correctTypo("가쟝 용기있는 사람이 머굼 되는거즤") === "가장 용기있는 사람이 먹음 되는거지")
     assert(correctTypo("만듀 먹것니? 먹겄서? 먹즤?") === "만두 먹겠니? 먹겠어? 먹지?")
   }
-}
\ No newline at end of file
+
+  test("normalizeWithOffsets should match normalize and map offsets back to the input") {
+    Seq("안됔ㅋㅋㅋㅋㅋ 저건 소린가 ㅋㅋㅋㅋ 하하하하 #해쉬태그", "무의미의미의미의미의미",
+      "가쟝 용기있는 사람이 머굼 되는거즤", "이건 ㅋ ㅎㅎ 원래 그래").foreach { text =>
+      assert(normalizeWithOffsets(text).text.toString === normalize(text))
+    }
+
+    val input = "ㅋㅋㅋㅋㅋ 소린가 하하 #해쉬태그"
+    val normalized = normalizeWithOffsets(input)
+    assert(normalized.text.toString === "ㅋㅋ 소리인가 하하 #해쉬태그")
+    val map = normalized.offsets
+    // "ㅋㅋ" spans the whole "ㅋㅋㅋㅋㅋ"
+    assert(map.toOriginal(0) === 0)
+    assert(map.toOriginal(2) === 5)
+    // "소리" -> "소린", "인가" -> "가"
+    assert(map.toOriginal(3) === 6)
+    assert(map.toOriginal(5) === 8)
+    assert(map.toOriginal(7) === 9)
+    // Unchanged text after the replacements shifts by the accumulated difference
+    assert(map.toOriginal(11) === input.indexOf("#해쉬태그"))
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.phrase_extractor
+
+import com.twitter.penguin.korean.TestBase
+import com.twitter.penguin.korean.TwitterKoreanProcessor._
+import com.twitter.penguin.korean.phrase_extractor.TrendingPhraseAggregator.SpaceSaving
+
+class TrendingPhraseAggregatorTest extends TestBase {
+  private def phrasesOf(text: String) = extractPhrases(tokenize(text), filterSpam = true)
+
+  test("topN should merge phrases sharing the same noun head") {
+    val aggregator = new TrendingPhraseAggregator(windowMillis = 1000L, bucketCount = 10)
+    aggregator.add(phrasesOf("크리스마스 선물"), 0L)
+    aggregator.add(phrasesOf("선물"), 10L)
+    aggregator.add(phrasesOf("주식"), 20L)
+
+    val top = aggregator.topN(1, 50L)
+    assert(top.map(_.head) === Seq("선물"))
+    assert(top.head.count === 3L)
+  }
+
+  test("topN should drop phrases that slid out of the window") {
+    val aggregator = new TrendingPhraseAggregator(windowMillis = 1000L, bucketCount = 10)
+    aggregator.add(phrasesOf("주식"), 0L)
+    aggregator.add(phrasesOf("선물"), 950L)
+
+    assert(aggregator.topN(10, 990L).map(_.head).toSet === Set("주식", "선물"))
+    assert(aggregator.topN(10, 1500L).map(_.head) === Seq("선물"))
+    assert(aggregator.topN(10, 3000L) === Seq())
+  }
+
+  test("add should keep counts from concurrent writers") {
+    val aggregator = new TrendingPhraseAggregator(windowMillis = 1000L, bucketCount = 1)
+    val phrases = phrasesOf("주식")
+    val threads = (1 to 4).map { _ =>
+      new Thread(new java.lang.Runnable {
+        override def run(): Unit = (1 to 1000).foreach(_ => aggregator.add(phrases, 0L))
+      })
+    }
+    threads.foreach(_.start())
+    threads.foreach(_.join())
+
+    assert(aggregator.topN(1, 0L).head.count === 4000L)
+  }
+
+  test("SpaceSaving should replace the head with the lowest count when full") {
+    val summary = new SpaceSaving(3)
+    def heads = {
+      val seen = Set.newBuilder[String]
+      summary.foreach((head, text) => seen += head)
+      seen.result()
+    }
+
+    summary.offer("a", "a", 5L)
+    summary.offer("b", "b", 1L)
+    summary.offer("c", "c", 3L)
+    summary.offer("d", "d", 1L)
+    assert(heads === Set("a", "b", "c"))
+
+    summary.offer("d", "d", 2L)
+    assert(heads === Set("a", "c", "d"))
+
+    // Raising a head's count moves it away from eviction.
+    summary.offer("d", "d", 10L)
+    summary.offer("e", "e", 4L)
+    assert(heads === Set("a", "d", "e"))
+    summary.offer("f", "f", 6L)
+    assert(heads === Set("a", "d", "f"))
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.penguin.korean.server
+
+import java.io.ByteArrayOutputStream
+import java.net.{HttpURLConnection, InetSocketAddress, URL}
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.{CountDownLatch, Executors, TimeUnit}
+
+import com.twitter.penguin.korean.TestBase
+import com.twitter.penguin.korean.server.KoreanTextServer.Options
+
+class KoreanTextServerTest extends TestBase {
+  private def withServer(options: Options,
+      operations: Map[String, (String, java.lang.StringBuilder) => Unit] = KoreanTextServer.Operations)
+      (f: InetSocketAddress => Unit): Unit = {
+    val server = new KoreanTextServer(options.copy(port = 0), operations)
+    val address = server.start()
+    try {
+      f(address)
+    } finally {
+      server.stop()
+    }
+  }
+
+  private def request(address: InetSocketAddress, path: String, body: String,
+      method: String = "POST", chunked: Boolean = false): (Int, String) = {
+    val url = new URL("http://127.0.0.1:%d%s".format(address.getPort, path))
+    val connection = url.openConnection().asInstanceOf[HttpURLConnection]
+    try {
+      connection.setRequestMethod(method)
+      if (method == "POST") {
+        connection.setDoOutput(true)
+        if (chunked) connection.setChunkedStreamingMode(16)
+        val out = connection.getOutputStream
+        out.write(body.getBytes(StandardCharsets.UTF_8))
+        out.close()
+      }
+      val status = connection.getResponseCode
+      val in = if (status < 400) connection.getInputStream else connection.getErrorStream
+      val bytes = new ByteArrayOutputStream()
+      val buffer = new Array[Byte](4096)
+      var n = in.read(buffer)
+      while (n >= 0) {
+        bytes.write(buffer, 0, n)
+        n = in.read(buffer)
+      }
+      in.close()
+      (status, new String(bytes.toByteArray, StandardCharsets.UTF_8))
+    } finally {
+      connection.disconnect()
+    }
+  }
+
+  private def expected(texts: Seq[String], f: (String, java.lang.StringBuilder) => Unit): String = {
+    val out = new java.lang.StringBuilder()
+    out.append('[')
+    texts.zipWithIndex.foreach { case (text, i) =>
+      if (i > 0) out.append(',')
+      f(text, out)
+    }
+    out.append("]\n").toString
+  }
+
+  test("each endpoint should answer one JSON entry per line") {
+    val texts = Seq("한국어를 처리하는 예시입니닼ㅋㅋㅋ", "\"뷁\"", "트위터 코리아 공식 계정", "대신하니까")
+    withServer(Options(workers = 2, handlers = 2)) { address =>
+      KoreanTextServer.Operations.foreach { case (path, op) =>
+        assert(request(address, path, texts.mkString("\n")) === (200, expected(texts, op)), path)
+      }
+
+      val (status, tokens) = request(address, "/tokenize", "한국어를 처리하는\n뷁")
+      assert(status === 200)
+      assert(tokens.startsWith("[[{\"text\":\"한국어\",\"pos\":\"Noun\",\"offset\":0,\"length\":3,\"unknown\":false}"))
+      assert(tokens.contains("],[{\"text\":\"뷁\""))
+      assert(tokens.endsWith("]]\n"))
+
+      assert(request(address, "/normalize", "\"안녕\"") === (200, "[\"\\\"안녕\\\"\"]\n"))
+    }
+  }
+
+  test("the server should answer an empty body with an empty array") {
+    withServer(Options(workers = 1)) { address =>
+      assert(request(address, "/tokenize", "") === (200, "[]\n"))
+    }
+  }
+
+  test("the server should reject other methods and overload") {
+    withServer(Options(workers = 1, maxQueue = 2)) { address =>
+      assert(request(address, "/tokenize", "", method = "GET")._1 === 405)
+      assert(request(address, "/tokenize", "하나\n둘\n셋")._1 === 503)
+      assert(request(address, "/tokenize", "하나\n둘")._1 === 200)
+    }
+  }
+
+  test("a failing text should fail only its request and keep the worker alive") {
+    val fail: (String, java.lang.StringBuilder) => Unit = { (text, out) =>
+      if (text == "fail") throw new StackOverflowError("deep")
+      out.append(text.length)
+    }
+    val operations = KoreanTextServer.Operations + ("/fail" -> fail)
+    withServer(Options(workers = 1), operations) { address =>
+      val (status, body) = request(address, "/fail", "ok\nfail\nok")
+      assert(status === 500)
+      assert(body.contains("StackOverflowError"))
+
+      assert(request(address, "/fail", "ok\nokay") === (200, "[2,4]\n"))
+      assert(request(address, "/normalize", "안녕") === (200, "[\"안녕\"]\n"))
+    }
+  }
+
+  test("the server should reject bodies without a length or over the limit before reading them") {
+    withServer(Options(workers = 1, maxBodyBytes = 8)) { address =>
+      assert(request(address, "/normalize", "안녕", chunked = true)._1 === 411)
+      assert(request(address, "/normalize", "안녕하세요 반갑습니다")._1 === 413)
+      assert(request(address, "/normalize", "안녕") === (200, "[\"안녕\"]\n"))
+    }
+  }
+
+  private def blockingOperations(entered: CountDownLatch, release: CountDownLatch) = {
+    val block: (String, java.lang.StringBuilder) => Unit = { (text, out) =>
+      entered.countDown()
+      release.await()
+      out.append(text.length)
+    }
+    KoreanTextServer.Operations + ("/block" -> block)
+  }
+
+  test("a request that does not finish within the timeout should get 503") {
+    val entered = new CountDownLatch(1)
+    val release = new CountDownLatch(1)
+    withServer(Options(workers = 1, timeoutMillis = 200), blockingOperations(entered, release)) { address =>
+      try {
+        val (status, body) = request(address, "/block", "a\nb")
+        assert(status === 503)
+        assert(body === "Timed out\n")
+      } finally {
+        release.countDown()
+      }
+      assert(request(address, "/normalize", "안녕") === (200, "[\"안녕\"]\n"))
+    }
+  }
+
+  test("stop should answer pending requests") {
+    val entered = new CountDownLatch(1)
+    val release = new CountDownLatch(1)
+    val server = new KoreanTextServer(Options(port = 0, workers = 1), blockingOperations(entered, release))
+    val address = server.start()
+    val client = Executors.newSingleThreadExecutor()
+    try {
+      val response = client.submit(new java.util.concurrent.Callable[(Int, String)] {
+        override def call(): (Int, String) = request(address, "/block", "a")
+      })
+      assert(entered.await(10, TimeUnit.SECONDS))
+      server.stop()
+      assert(response.get(10, TimeUnit.SECONDS) === (503, "Shutting down\n"))
+    } finally {
+      release.countDown()
+      client.shutdownNow()
+    }
+  }
+}
@@ -19,8 +19,9 @@
 package com.twitter.penguin.korean.stemmer
 
 import com.twitter.penguin.korean.TestBase
-import com.twitter.penguin.korean.tokenizer.KoreanTokenizer
 import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken
+import com.twitter.penguin.korean.tokenizer.{KoreanTokenizer, TokenizerProfile}
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
 import com.twitter.penguin.korean.util.KoreanPos._
 
 class KoreanStemmerTest extends TestBase {
@@ -151,4 +152,15 @@ class KoreanStemmerTest extends TestBase {
         assert(stem === stemmed.toString)
     }
   }
-}
\ No newline at end of file
+
+  test("tokenize with stem should match stem over tokenize") {
+    val texts = Seq(sampleText1, sampleText2, sampleText3, sampleText4) ++
+        readFileByLineFromResources("example_tweets.txt")
+    texts.foreach { text =>
+      assert(
+        KoreanTokenizer.tokenize(text, TokenizerProfile.defaultProfile, stem = true) ===
+          KoreanStemmer.stem(KoreanTokenizer.tokenize(text)), text
+      )
+    }
+  }
+}
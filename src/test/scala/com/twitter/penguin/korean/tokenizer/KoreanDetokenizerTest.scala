@@ -65,4 +65,14 @@ class KoreanDetokenizerTest extends TestBase {
           === "이 제품을 사용하겠습니다"
     )
   }
-}
\ No newline at end of file
+
+  test("detokenizeAll should match detokenize for every input") {
+    val inputs = List(
+      List("연세", "대학교", "보건", "대학원","에","오신","것","을","환영","합니다", "!"),
+      List(),
+      List("이", "제품을", "사용하겠습니다"),
+      List("와", "!!!", "iPhone", "6+", "가",",", "드디어","나왔다", "!")
+    )
+    assert(detokenizeAll(inputs) === inputs.map(detokenize))
+  }
+}
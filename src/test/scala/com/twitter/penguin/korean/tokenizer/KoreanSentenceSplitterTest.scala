@@ -18,9 +18,18 @@
 
 package com.twitter.penguin.korean.tokenizer
 
+import java.io.StringReader
+
 import com.twitter.penguin.korean.TestBase
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
 
 class KoreanSentenceSplitterTest extends TestBase {
+  // The regular expression used before the scanner, kept as a reference for the boundaries.
+  private val referenceRegex =
+    """(?x)[^.!?…\s][^.!?…]*(?:[.!?…](?!['\"]?\s|$)[^.!?…]*)*[.!?…]?['\"]?(?=\s|$)""".r
+
+  private def referenceSplit(s: String): Seq[Sentence] =
+    referenceRegex.findAllMatchIn(s).map(m => Sentence(m.group(0), m.start, m.end)).toList
 
   test("split should correctly split a string into sentences") {
     assert(
@@ -39,4 +48,26 @@ class KoreanSentenceSplitterTest extends TestBase {
     )
   }
 
-}
\ No newline at end of file
+
+  test("split should find the same boundaries as the reference regular expression") {
+    val edgeCases = Seq("", " ", "...", "그래.", "그래.\"", "그래.\" 응", "그래.' 응?'", "그래\n", "그래.\r\n",
+      "그래.\u2028응", "a.b.c. d", "\"인용.\"\t다음!", "?!?! 끝", "끝…\n\n시작")
+    val tweets = readFileByLineFromResources("example_tweets.txt").toSeq
+
+    (edgeCases ++ tweets ++ Seq(tweets.mkString("\n"))).foreach { s =>
+      assert(KoreanSentenceSplitter.split(s) === referenceSplit(s), s)
+    }
+  }
+
+  test("splitSpans should lazily split a Reader") {
+    val text = "그런데, 누가 그러는데, 루루가 있대. 그렇대? 그렇지! 아리고 이럴수가!!!!! 그래...\"  "
+    assert(
+      KoreanSentenceSplitter.splitSpans(new StringReader(text)).toList ===
+        KoreanSentenceSplitter.splitSpans(text).toList
+    )
+    assert(
+      KoreanSentenceSplitter.splitSpans(text).take(2).toList ===
+        List(SentenceSpan(0, 21), SentenceSpan(22, 26))
+    )
+  }
+}
@@ -21,6 +21,7 @@ package com.twitter.penguin.korean.tokenizer
 import com.twitter.penguin.korean.TestBase
 import com.twitter.penguin.korean.tokenizer.KoreanTokenizer._
 import com.twitter.penguin.korean.util.KoreanDictionaryProvider
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider.readFileByLineFromResources
 import com.twitter.penguin.korean.util.KoreanPos._
 
 class KoreanTokenizerTest extends TestBase {
@@ -245,4 +246,218 @@ class KoreanTokenizerTest extends TestBase {
     assert(tokenize("뇬뇨뇬뇨뇬뇨뇬뇨츄쵸").mkString(" ") ===
         "뇬뇨(Noun: 0, 2) 뇬뇨(Noun: 2, 2) 뇬뇨(Noun: 4, 2) 뇬뇨(Noun: 6, 2) 츄쵸(Noun: 8, 2)")
   }
-}
\ No newline at end of file
+
+  test("tokenize with a TokenizerTrace should record the lattice of each Korean chunk") {
+    val text = "아버지가방에 들어가신다 ㅋㅋ 사랑"
+    val trace = new TokenizerTrace
+    assert(tokenize(text, TokenizerProfile.defaultProfile, trace) === tokenize(text))
+
+    assert(trace.chunks.map(_.chunk.text) === Seq("아버지가방에", "들어가신다", "사랑"))
+    assert(trace.chunks.map(_.directMatch) === Seq(false, false, true))
+
+    val lattice = trace.chunks.head
+    assert(lattice.beams.map(_._1) === (1 to 6))
+    assert(lattice.beams.forall(_._2.size <= 5))
+    assert(lattice.candidates.nonEmpty)
+    assert(lattice.candidates.forall(c => c.tokens.last.offset + c.tokens.last.length == c.end))
+    lattice.candidates.foreach { c =>
+      assert(math.abs(c.breakdown.map(_._2).sum - c.score) < 1e-4)
+    }
+    assert(lattice.beams.last._2.head.tokens === lattice.result)
+    assert(lattice.toString.contains("아버지가방에"))
+    assert(TokenizerTrace.Disabled.chunks.isEmpty)
+  }
+
+  test("the dictionary fast path should parse chunks exactly as the lattice does") {
+    val lattice = TokenizerProfile(dictionaryFastPath = false)
+    val input = readFileByLineFromResources("example_chunks.txt").toSeq ++
+        readFileByLineFromResources("example_tweets.txt").toSeq
+
+    resetChunkPathCounts()
+    input.foreach { s =>
+      assert(tokenize(s) === tokenize(s, lattice), s)
+    }
+    val counts = chunkPathCounts
+    assert(counts("fastPath") > 0)
+    assert(counts("lattice") > 0)
+    assert(counts("directMatch") > 0)
+
+    assert(tokenize("사랑을").mkString(" ") === "사랑(Noun: 0, 2) 을(Josa: 2, 1)")
+  }
+
+  test("tokenizeParallel should match tokenize on large texts") {
+    val tweets = readFileByLineFromResources("example_tweets.txt").toSeq
+    val text = tweets.mkString("\n")
+
+    val ranges = segments(text, 256)
+    assert(ranges.size > 1)
+    assert(ranges.head._1 === 0)
+    assert(ranges.last._2 === text.length)
+    ranges.sliding(2).foreach { case Seq((_, end), (start, _)) =>
+      assert(end === start)
+      assert(text.charAt(end - 1).isWhitespace && !text.charAt(end).isWhitespace)
+    }
+
+    assert(tokenizeParallel(text, segmentLength = 256) === tokenize(text))
+    assert(tokenizeParallel(text, segmentLength = 1) === tokenize(text))
+    assert(tokenizeParallel("  사랑해  ", segmentLength = 1) === tokenize("  사랑해  "))
+    assert(tokenizeParallel("") === Seq())
+  }
+
+  test("tokenizeParallel should keep the space guide offsets of the whole text") {
+    val word = "아버지가방에들어가신다"
+    val text = Seq.fill(40)(word).mkString(" ")
+    // Only the second half is guided, so offsets relative to a segment would miss the guide.
+    val starts = (20 until 40).map(_ * (word.length + 1))
+    val guided = TokenizerProfile(spaceGuide = starts.flatMap(s => Seq(s, s + 4, s + 6)).toSet)
+
+    val expected = tokenize(text, guided)
+    assert(expected !== tokenize(text))
+    assert(tokenizeParallel(text, guided, segmentLength = 32) === expected)
+    assert(tokenizeParallel(text, guided, segmentLength = 1) === expected)
+  }
+
+  test("score-bound pruning should keep the parses of example chunks") {
+    val lattice = TokenizerProfile(dictionaryFastPath = false)
+    val pruned = TokenizerProfile(dictionaryFastPath = false, scoreBoundPruning = true)
+    val chunks = readFileByLineFromResources("example_chunks.txt").toVector
+
+    resetChunkPathCounts()
+    val expected = chunks.map(tokenize(_, lattice))
+    val built = chunkPathCounts("latticeCandidates")
+
+    resetChunkPathCounts()
+    chunks.zip(expected).foreach { case (s, tokens) =>
+      assert(tokenize(s, pruned) === tokens, s)
+    }
+    assert(chunkPathCounts("latticeCandidates") < built)
+
+    val guided = TokenizerProfile(spaceGuide = Set(2, 4), scoreBoundPruning = true)
+    chunks.take(200).foreach { s =>
+      assert(tokenize(s, guided) === tokenize(s, guided.copy(scoreBoundPruning = false)), s)
+    }
+  }
+
+  test("the unknown noun gate should build fewer candidates and keep dictionary parses") {
+    val lattice = TokenizerProfile(dictionaryFastPath = false)
+    val gated = lattice.copy(unknownNounGate = true)
+    val chunks = readFileByLineFromResources("example_chunks.txt").take(2000).toVector
+
+    resetChunkPathCounts()
+    val expected = chunks.map(tokenize(_, lattice))
+    val built = chunkPathCounts("latticeCandidates")
+
+    resetChunkPathCounts()
+    val parsed = chunks.map(tokenize(_, gated))
+    assert(chunkPathCounts("latticeCandidates") < built)
+    assert(parsed.zip(expected).count { case (a, b) => a == b } > chunks.size * 95 / 100)
+
+    assert(tokenize("사랑해요", gated) === tokenize("사랑해요", lattice))
+    assert(tokenize("뷁뛣", gated).map(_.length).sum === 2)
+  }
+
+  test("retokenize should equal tokenizing the edited text") {
+    val random = new scala.util.Random(42)
+    var text = readFileByLineFromResources("example_tweets.txt").take(50).mkString("\n")
+    var tokens: IndexedSeq[KoreanToken] = tokenize(text).toIndexedSeq
+    val inserts = Seq("", " ", "  ", "\n", "사랑", "해요 ", "ㅋㅋ", "#트위터", " 사람을", "a")
+    (1 to 300).foreach { _ =>
+      val offset = random.nextInt(text.length + 1)
+      val edit = TextEdit(offset, random.nextInt(math.min(4, text.length - offset) + 1),
+        inserts(random.nextInt(inserts.size)))
+      text = edit.applyTo(text)
+      tokens = retokenize(text, tokens, edit)
+      assert(tokens === tokenize(text), edit)
+    }
+
+    assert(retokenize("사랑", IndexedSeq(), TextEdit(0, 0, "사랑")) === tokenize("사랑"))
+    assert(retokenize("", tokenize("사랑").toIndexedSeq, TextEdit(0, 2, "")) === Seq())
+    intercept[IllegalArgumentException] {
+      retokenize("사랑해요", tokenize("사랑").toIndexedSeq, TextEdit(2, 0, "해"))
+    }
+  }
+
+  test("retokenize should parse only the chunks touched by an edit") {
+    val text = readFileByLineFromResources("example_chunks.txt").take(2000).mkString(" ")
+    val tokens = tokenize(text).toVector
+    val offset = text.length / 2
+    val edit = TextEdit(offset, 0, "사랑")
+
+    resetChunkPathCounts()
+    val edited = retokenize(edit.applyTo(text), tokens, edit)
+    val counts = chunkPathCounts
+    assert(counts("directMatch") + counts("fastPath") + counts("lattice") <= 3)
+
+    // The kept tokens are the previous ones, not copies.
+    val index = tokens.indexWhere(_.offset >= offset) / 2
+    assert(edited(0) eq tokens(0))
+    assert(edited(index) eq tokens(index))
+  }
+
+  test("EditedTokens should splice without copying and merge small slices") {
+    val tokens = tokenize(readFileByLineFromResources("example_tweets.txt").take(100).mkString("\n")).toVector
+    var edited = EditedTokens(tokens)
+    assert(edited === tokens)
+    assert(edited.indexAtOffset(0) === 0)
+    assert(edited.indexAtOffset(Int.MaxValue) === tokens.size)
+    assert(tokens.indices.forall(i => edited.indexAtOffset(tokens(i).offset) <= i))
+
+    val inserted = Vector(KoreanToken("뷁", Noun, 0, 1))
+    edited = edited.splice(10, 12, inserted, 3)
+    val expected = tokens.take(10) ++ inserted ++ tokens.drop(12).map(t => t.copy(offset = t.offset + 3))
+    assert(edited === expected)
+    assert(edited(0) eq tokens(0))
+
+    // Repeated edits in one place keep the number of slices bounded.
+    // The head slice and the insert are merged.
+    assert(edited.slices === 2)
+    (1 to 200).foreach(i => edited = edited.splice(10, 11, inserted, 0))
+    assert(edited === expected)
+    assert(edited.slices === 2)
+    assert(edited.splice(0, edited.size, IndexedSeq(), 0) === Seq())
+  }
+
+  test("greedy mode should cover every chunk and mostly agree with the lattice") {
+    val greedy = TokenizerProfile(greedy = true)
+    assert(tokenize("머리만 아파서", greedy) === Seq(
+      KoreanToken("머리", Noun, 0, 2),
+      KoreanToken("만", Josa, 2, 1),
+      KoreanToken(" ", Space, 3, 1),
+      KoreanToken("아파", Adjective, 4, 2),
+      KoreanToken("서", Eomi, 6, 1)
+    ))
+    assert(tokenize("뷁뛣을", greedy).head === KoreanToken("뷁뛣", Noun, 0, 2, unknown = true))
+
+    val chunks = readFileByLineFromResources("example_chunks.txt").take(2000).toVector
+    resetChunkPathCounts()
+    val parsed = chunks.map { chunk =>
+      val tokens = tokenize(chunk, greedy)
+      assert(tokens.map(_.text).mkString === chunk)
+      tokens
+    }
+    assert(chunkPathCounts("lattice") === 0)
+    assert(chunkPathCounts("greedy") > 0)
+    assert(parsed.zip(chunks.map(tokenize(_))).count { case (a, b) => a == b } > chunks.size * 3 / 4)
+  }
+
+  test("tokenizeWithProfiles should equal tokenizing under each profile") {
+    val profiles = Seq(
+      TokenizerProfile.defaultProfile,
+      TokenizerProfile(freq = 0.4f, unknown = 0.5f, tokenCount = 0.1f),
+      TokenizerProfile(preferredPatterns = Seq(), dictionaryFastPath = false),
+      TokenizerProfile(unknownNounGate = true),
+      TokenizerProfile(greedy = true),
+      TokenizerProfile(spaceGuide = Set(0, 3), scoreBoundPruning = true)
+    )
+    val texts = readFileByLineFromResources("example_tweets.txt").take(200).toVector ++
+        readFileByLineFromResources("example_chunks.txt").take(1000)
+    texts.foreach { text =>
+      val result = tokenizeWithProfiles(text, profiles)
+      assert(result.separateRuns === Seq(3, 4))
+      profiles.zip(result.tokens).foreach { case (profile, tokens) =>
+        assert(tokens === tokenize(text, profile), text)
+      }
+    }
+    assert(tokenizeWithProfiles("사랑", Seq(TokenizerProfile())).separateRuns === Seq(0))
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.penguin.korean.util
+
+import com.twitter.penguin.korean.TestBase
+import com.twitter.penguin.korean.phrase_extractor.KoreanPhraseExtractor.KoreanPhrase
+import com.twitter.penguin.korean.tokenizer.KoreanTokenizer.KoreanToken
+import com.twitter.penguin.korean.util.KoreanPos._
+
+class JsonTest extends TestBase {
+  private def write(f: java.lang.StringBuilder => Unit): String = {
+    val out = new java.lang.StringBuilder()
+    f(out)
+    out.toString
+  }
+
+  test("appendString should quote and escape") {
+    assert(write(Json.appendString("사랑해", _)) === "\"사랑해\"")
+    assert(write(Json.appendString("", _)) === "\"\"")
+    assert(write(Json.appendString("a\"b\\c\nd\re\tf\u0001g/", _)) ===
+        "\"a\\\"b\\\\c\\nd\\re\\tf\\u0001g/\"")
+  }
+
+  test("appendTokens should write one object per token") {
+    assert(write(Json.appendTokens(Seq(), _)) === "[]")
+    assert(write(Json.appendTokens(Seq(
+      KoreanToken("사랑", Noun, 0, 2),
+      KoreanToken("\"뷁\"", Noun, 2, 3, unknown = true)
+    ), _)) ===
+        "[{\"text\":\"사랑\",\"pos\":\"Noun\",\"offset\":0,\"length\":2,\"unknown\":false}," +
+        "{\"text\":\"\\\"뷁\\\"\",\"pos\":\"Noun\",\"offset\":2,\"length\":3,\"unknown\":true}]")
+  }
+
+  test("appendPhrases should write the phrase text and span") {
+    assert(write(Json.appendPhrases(Seq(), _)) === "[]")
+    val phrase = KoreanPhrase(Seq(
+      KoreanToken("트위터", Noun, 3, 3), KoreanToken(" ", Space, 6, 1), KoreanToken("코리아", Noun, 7, 3)
+    ))
+    assert(write(Json.appendPhrases(Seq(phrase), _)) ===
+        "[{\"text\":\"트위터 코리아\",\"pos\":\"Noun\",\"offset\":3,\"length\":7}]")
+  }
+}
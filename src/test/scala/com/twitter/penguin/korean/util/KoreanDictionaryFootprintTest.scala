@@ -0,0 +1,83 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.util
+
+import java.lang.management.ManagementFactory
+import javax.management.openmbean.CompositeData
+
+import com.twitter.penguin.korean.TestBase
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
+
+class KoreanDictionaryFootprintTest extends TestBase {
+  private def footprint(name: String): DictionaryFootprint =
+    KoreanDictionaryFootprint.footprints.find(_.name == name).get
+
+  test("footprints should report every dictionary") {
+    val nouns = footprint("koreanDictionary.Noun")
+    assert(nouns.entries === koreanDictionary(KoreanPos.Noun).size)
+    assert(nouns.capacity >= nouns.entries)
+    assert(nouns.loadFactor > 0 && nouns.loadFactor <= 1)
+    assert(nouns.estimatedBytes > nouns.entries * 16L)
+    assert(nouns.initialized && !nouns.releasable)
+
+    assert(footprint("properNouns").entries === properNouns.size)
+    assert(KoreanDictionaryFootprint.estimatedBytes ===
+        KoreanDictionaryFootprint.footprints.map(_.estimatedBytes).sum)
+
+    predicateStems
+    val stems = footprint("predicateStems")
+    assert(stems.initialized && stems.releasable)
+    assert(stems.entries === predicateStems.values.map(_.size).sum)
+    assert(stems.capacity === -1)
+
+    nameDictionary
+    assert(footprint("nameDictionary").entries === nameDictionary.values.map(_.size).sum)
+    koreanEntityFreq
+    assert(footprint("koreanEntityFreq").entries === koreanEntityFreq.size)
+  }
+
+  test("releaseOptionalDictionaries should release and reload optional dictionaries") {
+    typoDictionaryByLength
+    spamNouns
+    assert(KoreanDictionaryFootprint.releaseOptionalDictionaries() >= 2)
+    val released = footprint("typoDictionaryByLength")
+    assert(!released.initialized)
+    assert(released.estimatedBytes === 0)
+    assert(KoreanDictionaryFootprint.releaseOptionalDictionaries() === 0)
+
+    assert(!spamNouns.isEmpty)
+    assert(footprint("spamNouns").initialized)
+    assert(footprint("koreanDictionary.Noun").initialized)
+  }
+
+  test("registerMBean should expose footprints over JMX") {
+    KoreanDictionaryFootprint.registerMBean()
+    KoreanDictionaryFootprint.registerMBean()
+    val server = ManagementFactory.getPlatformMBeanServer
+    val name = KoreanDictionaryFootprint.ObjectName
+
+    val dictionaries = server.getAttribute(name, "Dictionaries").asInstanceOf[Array[CompositeData]]
+    val nouns = dictionaries.find(_.get("name") == "koreanDictionary.Noun").get
+    assert(nouns.get("entries") === koreanDictionary(KoreanPos.Noun).size)
+    assert(server.getAttribute(name, "EstimatedBytes").asInstanceOf[Long] > 0)
+
+    spamNouns
+    assert(server.invoke(name, "releaseOptionalDictionaries", Array(), Array()).asInstanceOf[Int] >= 1)
+  }
+}
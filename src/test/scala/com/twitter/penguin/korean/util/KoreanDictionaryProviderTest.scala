@@ -18,6 +18,8 @@
 
 package com.twitter.penguin.korean.util
 
+import java.io.File
+
 import com.twitter.penguin.korean.TestBase
 import KoreanDictionaryProvider._
 class KoreanDictionaryProviderTest extends TestBase {
@@ -31,5 +33,36 @@ class KoreanDictionaryProviderTest extends TestBase {
 
     assert(koreanDictionary(KoreanPos.Noun).contains(nonExsistentWord))
   }
-}
 
+  test("reloadDictionary should keep words added at runtime") {
+    addWordsToDictionary(KoreanPos.Adverb, Seq("뷁쀍스레"))
+    reloadDictionary(KoreanPos.Adverb, Seq("뷀쀍스레"))
+    assert(koreanDictionary(KoreanPos.Adverb).contains("뷁쀍스레"))
+    assert(koreanDictionary(KoreanPos.Adverb).contains("뷀쀍스레"))
+
+    reloadDictionary(KoreanPos.Adverb, Nil)
+    assert(koreanDictionary(KoreanPos.Adverb).contains("뷁쀍스레"))
+    assert(!koreanDictionary(KoreanPos.Adverb).contains("뷀쀍스레"))
+  }
+
+  test("reloadDictionary should keep a mapped dictionary mapped") {
+    val original = koreanDictionary(KoreanPos.Adverb)
+    val file = File.createTempFile("Adverb", ".dict")
+    file.delete()
+    try {
+      val mapped = loadMappedDictionary(KoreanPos.Adverb, file)
+      mapped.add("뷀뷁스레")
+      replaceDictionary(KoreanPos.Adverb, mapped)
+      addWordsToDictionary(KoreanPos.Adverb, Seq("쀍뷁스레"))
+
+      val reloaded = reloadDictionary(KoreanPos.Adverb, Seq("뷁뷀스레"))
+      assert(reloaded.isInstanceOf[MappedCharArraySet])
+      assert(reloaded.contains("뷁뷀스레"))
+      assert(!reloaded.contains("뷀뷁스레"))
+      assert(reloaded.contains("쀍뷁스레"))
+    } finally {
+      replaceDictionary(KoreanPos.Adverb, original)
+      file.delete()
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.util
+
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+import com.twitter.penguin.korean.{TestBase, TwitterKoreanProcessor}
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
+
+class KoreanDictionaryReloaderTest extends TestBase {
+  private def write(file: File, words: String*): Unit = {
+    Files.write(file.toPath, words.mkString("\n").getBytes(StandardCharsets.UTF_8))
+  }
+
+  test("reloadChanged should rebuild dictionaries from changed files") {
+    val directory = Files.createTempDirectory("korean-dictionary").toFile
+    val reloader = new KoreanDictionaryReloader(directory, onReload = _ => ())
+    val adverbs = new File(directory, "Adverb.txt")
+    val verbs = new File(directory, "verb.txt")
+    try {
+      assert(reloader.reloadChanged() === Seq())
+      assert(!koreanDictionary(KoreanPos.Adverb).contains("뷁뷁히"))
+
+      write(adverbs, "뷁뷁히", "", "뷀뷀히")
+      write(verbs, "뷁하")
+      val reports = reloader.reloadChanged()
+      assert(reports.map(r => (r.pos, r.words)) === Seq(KoreanPos.Adverb -> 2, KoreanPos.Verb -> 1))
+      assert(reports.head.entries === koreanDictionary(KoreanPos.Adverb).size)
+      assert(koreanDictionary(KoreanPos.Adverb).contains("뷁뷁히"))
+      assert(koreanDictionary(KoreanPos.Verb).contains("뷁했"))
+      assert(reloader.reloadChanged() === Seq())
+
+      write(adverbs, "뷀뷀히")
+      adverbs.setLastModified(adverbs.lastModified + 1000)
+      assert(reloader.reloadChanged().map(_.pos) === Seq(KoreanPos.Adverb))
+      assert(!koreanDictionary(KoreanPos.Adverb).contains("뷁뷁히"))
+      assert(koreanDictionary(KoreanPos.Adverb).contains("뷀뷀히"))
+
+      adverbs.delete()
+      verbs.delete()
+      assert(reloader.reloadChanged().map(r => (r.pos, r.words)) ===
+          Seq(KoreanPos.Adverb -> 0, KoreanPos.Verb -> 0))
+      assert(!koreanDictionary(KoreanPos.Adverb).contains("뷀뷀히"))
+      assert(!koreanDictionary(KoreanPos.Verb).contains("뷁했"))
+    } finally {
+      adverbs.delete()
+      verbs.delete()
+      reloader.reloadChanged()
+      directory.delete()
+    }
+  }
+
+  test("reloadChanged should rebuild stems and proper nouns with the dictionaries") {
+    val directory = Files.createTempDirectory("korean-dictionary").toFile
+    val reloader = new KoreanDictionaryReloader(directory, onReload = _ => ())
+    val verbs = new File(directory, "Verb.txt")
+    val nouns = new File(directory, "Noun.txt")
+    try {
+      // Load the stems before the reload, so they are rebuilt rather than loaded afresh.
+      assert(!predicateStems(KoreanPos.Verb).contains("뷁뷁했"))
+
+      write(verbs, "뷁뷁하")
+      write(nouns, "뷁쀍뷁")
+      reloader.reloadChanged()
+      assert(predicateStems(KoreanPos.Verb)("뷁뷁했") === "뷁뷁하다")
+      assert(properNouns.contains("뷁쀍뷁"))
+
+      val stemmed = TwitterKoreanProcessor.tokenizeAndStem("뷁뷁했다")
+      assert(stemmed.map(t => (t.text, t.pos)) === Seq("뷁뷁하다" -> KoreanPos.Verb))
+      assert(TwitterKoreanProcessor.stem(TwitterKoreanProcessor.tokenize("뷁뷁했다")) === stemmed)
+    } finally {
+      verbs.delete()
+      nouns.delete()
+      reloader.reloadChanged()
+      directory.delete()
+    }
+    assert(!predicateStems(KoreanPos.Verb).contains("뷁뷁했"))
+    assert(!properNouns.contains("뷁쀍뷁"))
+  }
+}
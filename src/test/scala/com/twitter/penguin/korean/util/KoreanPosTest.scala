@@ -118,4 +118,29 @@ class KoreanPosTest extends TestBase {
     )
   }
 
+  test("KoreanPosSet should test membership by POS id") {
+    val set = KoreanPosSet(Noun, ProperNoun, Josa)
+    values.foreach { pos =>
+      assert(set.contains(pos) === Set(Noun, ProperNoun, Josa).contains(pos), pos)
+    }
+    assert(set.size === 3)
+    assert(set.toSet === Set(Noun, ProperNoun, Josa))
+    assert((set + Eomi ++ KoreanPosSet(Noun)).toSet === Set(Noun, ProperNoun, Josa, Eomi))
+    assert(KoreanPosSet.empty.isEmpty)
+  }
+
+  test("KoreanPosMap should index values by POS id") {
+    val map = new KoreanPosMap[String]
+    map += ProperNoun -> "proper"
+    map += Noun -> "noun"
+    assert(map(Noun) === "noun")
+    assert(map.get(Verb) === None)
+    assert(map.toSeq === Seq(Noun -> "noun", ProperNoun -> "proper"))
+    assert(map.put(Noun, "nouns") === Some("noun"))
+    map -= ProperNoun
+    assert(map.keys.toSeq === Seq(Noun))
+    intercept[NoSuchElementException] {
+      map(Verb)
+    }
+  }
 }
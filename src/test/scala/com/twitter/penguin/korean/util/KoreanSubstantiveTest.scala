@@ -131,6 +131,22 @@ class KoreanSubstantiveTest extends TestBase {
     assert(!isKoreanNameVariation("유하기"))
   }
 
+  test("ChunkFeatures should agree with isName, isKoreanNumber and isKoreanNameVariation") {
+    val chunks = KoreanDictionaryProvider.readFileByLineFromResources("example_chunks.txt")
+        .filter(_.matches("[가-힣]+")).take(5000).toSeq ++
+        Seq("우혀니", "빠수니", "이은우", "이십오만원", "백삼십", "영희가")
+
+    chunks.foreach { chunk =>
+      val features = new ChunkFeatures(chunk, 8)
+      for (start <- 0 until chunk.length; end <- start + 1 to math.min(chunk.length, start + 10)) {
+        val word = chunk.substring(start, end)
+        assert(features.isName(start, end) === isName(word), word)
+        assert(features.isKoreanNumber(start, end) === isKoreanNumber(word), word)
+        assert(features.isKoreanNameVariation(start, end) === isKoreanNameVariation(word), word)
+      }
+    }
+  }
+
   test("collapseNouns should collapse single-length nouns correctly") {
     assert(
       collapseNouns(Seq(KoreanToken("마", Noun, 0, 1), KoreanToken("코", Noun, 1, 1), KoreanToken("토", Noun, 2, 1)))
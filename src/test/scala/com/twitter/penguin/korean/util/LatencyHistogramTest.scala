@@ -0,0 +1,62 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.twitter.penguin.korean.util
+
+import com.twitter.penguin.korean.TestBase
+
+class LatencyHistogramTest extends TestBase {
+  test("an empty histogram should report zero") {
+    val histogram = new LatencyHistogram
+    assert(histogram.count === 0)
+    assert(histogram.percentile(0.5) === 0)
+    assert(histogram.percentile(1.0) === 0)
+  }
+
+  test("values below 64 should be exact") {
+    val histogram = new LatencyHistogram
+    (0 until 64).foreach(v => histogram.record(v))
+    histogram.record(-5)
+    assert(histogram.count === 65)
+    assert(histogram.percentile(0.0) === 0)
+    assert(histogram.percentile(0.5) === 31)
+    assert(histogram.percentile(1.0) === 63)
+  }
+
+  test("percentiles should be within 3% of the recorded values") {
+    val histogram = new LatencyHistogram
+    val values = (1 to 10000).map(i => i.toLong * 1000)
+    values.foreach(histogram.record)
+    assert(histogram.count === values.size)
+
+    Seq(0.01, 0.5, 0.9, 0.99, 0.999, 1.0).foreach { q =>
+      val expected = values(math.ceil(q * values.size).toInt - 1)
+      val actual = histogram.percentile(q)
+      assert(actual >= expected, "p%s: %d < %d".format(q, actual, expected))
+      assert(actual <= expected * 1.03, "p%s: %d > %d".format(q, actual, expected))
+    }
+  }
+
+  test("large values should stay within 3%") {
+    Seq(64L, 100L, 12345678L, 1L << 40, Long.MaxValue / 2).foreach { v =>
+      val histogram = new LatencyHistogram
+      histogram.record(v)
+      assert(histogram.percentile(0.5) >= v)
+      assert(histogram.percentile(0.5) <= v + v / 32)
+    }
+  }
+}
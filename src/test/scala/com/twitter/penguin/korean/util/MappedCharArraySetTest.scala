@@ -0,0 +1,124 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.util
+
+import java.io.File
+
+import com.twitter.penguin.korean.TestBase
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
+
+import scala.collection.JavaConversions._
+
+class MappedCharArraySetTest extends TestBase {
+  private def withMapped(words: java.lang.Iterable[_])(f: MappedCharArraySet => Unit): Unit = {
+    val file = File.createTempFile("mapped", ".dict")
+    try {
+      MappedCharArraySet.write(file, words)
+      f(MappedCharArraySet.open(file))
+    } finally {
+      file.delete()
+    }
+  }
+
+  test("MappedCharArraySet should look up words and slices") {
+    withMapped(seqAsJavaList(Seq("사랑", "사랑해", "트위터", "", "사랑"))) { set =>
+      assert(set.size === 4)
+      assert(set.contains("사랑"))
+      assert(set.contains(""))
+      assert(!set.contains("사"))
+      assert(set.contains("내가사랑해요".toCharArray, 2, 3))
+      assert(!set.contains("내가사랑해요".toCharArray, 2, 4))
+      assert(set.contains(new java.lang.StringBuilder("트위터")))
+      assert(set.iterator.map(w => new String(w.asInstanceOf[Array[Char]])).toSet ===
+          Set("사랑", "사랑해", "트위터", ""))
+
+      assert(set.add("뷁"))
+      assert(!set.add("사랑"))
+      assert(set.contains("뷁"))
+      assert(set.size === 5)
+    }
+  }
+
+  test("MappedCharArraySet should match the on-heap noun dictionary") {
+    val nouns = koreanDictionary(KoreanPos.Noun)
+    withMapped(nouns) { set =>
+      assert(set.size === nouns.size)
+      readFileByLineFromResources("example_chunks.txt").foreach { chunk =>
+        (1 to math.min(chunk.length, 4)).foreach { n =>
+          val word = chunk.take(n)
+          assert(set.contains(word) === nouns.contains(word), word)
+        }
+      }
+    }
+  }
+
+  test("MappedCharArraySet should keep the source hash") {
+    val file = File.createTempFile("mapped", ".dict")
+    try {
+      MappedCharArraySet.write(file, seqAsJavaList(Seq("사랑")), 0x123456789abcdefL)
+      assert(MappedCharArraySet.open(file).sourceHash === 0x123456789abcdefL)
+      MappedCharArraySet.write(file, seqAsJavaList(Seq("사랑")))
+      assert(MappedCharArraySet.open(file).sourceHash === 0L)
+    } finally {
+      file.delete()
+    }
+  }
+
+  test("loadMappedDictionary should rewrite stale and old files") {
+    val file = File.createTempFile("Josa", ".dict")
+    try {
+      val josa = buildDictionary(KoreanPos.Josa, Nil)
+      val hash = resourceHash(Seq("josa/josa.txt"))
+      assert(hash !== 0L)
+      assert(hash === resourceHash(Seq("josa/josa.txt")))
+      assert(hash !== resourceHash(Seq("verb/eomi.txt")))
+
+      // Written from other resources
+      MappedCharArraySet.write(file, seqAsJavaList(Seq("뷁")), hash + 1)
+      var set = loadMappedDictionary(KoreanPos.Josa, file)
+      assert(set.sourceHash === hash)
+      assert(set.size === josa.size)
+      assert(set.contains("에서") && !set.contains("뷁"))
+
+      // Up to date: reused as is
+      val modified = file.lastModified()
+      file.setLastModified(modified - 10000)
+      set = loadMappedDictionary(KoreanPos.Josa, file)
+      assert(file.lastModified() === modified - 10000)
+      assert(set.size === josa.size)
+
+      // An older format
+      val out = new java.io.DataOutputStream(new java.io.FileOutputStream(file))
+      try {
+        out.writeInt(0x4B444943)
+        out.writeInt(1)
+        out.writeInt(0)
+        out.writeInt(1)
+        out.writeLong(-1L)
+      } finally {
+        out.close()
+      }
+      set = loadMappedDictionary(KoreanPos.Josa, file)
+      assert(set.sourceHash === hash)
+      assert(set.contains("에서"))
+    } finally {
+      file.delete()
+    }
+  }
+}
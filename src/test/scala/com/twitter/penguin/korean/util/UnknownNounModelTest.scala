@@ -0,0 +1,60 @@
+/*
+ * Twitter Korean Text - Scala library to process Korean text
+ *
+ * Copyright 2016 Twitter, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.twitter.penguin.korean.util
+
+import java.io.{File, FileInputStream}
+
+import com.twitter.penguin.korean.TestBase
+import com.twitter.penguin.korean.util.KoreanDictionaryProvider._
+
+class UnknownNounModelTest extends TestBase {
+  test("UnknownNounModel should count syllables and survive a round trip") {
+    val model = UnknownNounModel.build(Iterator("사랑", "사과", "사과", "과일", "a사", "사"))
+    assert(model.startCount('사') === 4)
+    assert(model.endCount('과') === 2)
+    assert(model.pairCount('사', '과') === 2)
+    assert(model.pairCount('과', '사') === 0)
+    assert(model.pairCount('a', '사') === 0)
+
+    assert(model.isPlausible("사과"))
+    assert(!model.isPlausible("사랑"))
+    assert(model.isPlausible("사랑", minCount = 1))
+    assert(!model.isPlausible(""))
+
+    val file = File.createTempFile("unknown_nouns", ".bin")
+    try {
+      model.write(file)
+      val in = new FileInputStream(file)
+      val read = try UnknownNounModel.read(in) finally in.close()
+      assert(read.bigramCount === model.bigramCount)
+      assert(read.pairCount('사', '과') === 2)
+      assert(read.startCount('과') === model.startCount('과'))
+      assert(read.isPlausible("사과"))
+    } finally {
+      file.delete()
+    }
+  }
+
+  test("the bundled model should accept most dictionary nouns") {
+    val model = unknownNounModel
+    val nouns = readFileByLineFromResources("noun/nouns.txt").filter(_.length > 1).take(2000).toVector
+    assert(nouns.count(model.isPlausible(_)) > nouns.size * 2 / 3)
+    assert(!model.isPlausible("뷁뛣"))
+  }
+}